@@ -1,37 +1,71 @@
 package com.filiaiev.polytech.controller;
 
 import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.filiaiev.polytech.dto.BookPatchDTO;
+import com.filiaiev.polytech.dto.BulkUpdateResultDTO;
 import com.filiaiev.polytech.dto.UpdateBookDTO;
 import com.filiaiev.polytech.exception.BookNotFoundException;
 import com.filiaiev.polytech.service.BookService;
+import com.filiaiev.polytech.util.JsonArrayReader;
 import com.filiaiev.polytech.validation.groups.UpdateEntireBook;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import javax.validation.constraints.Min;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RequestMapping("/api/v1/books")
 @RestController
+@Validated
 @RequiredArgsConstructor
 public class BookController {
 
     private final BookService bookService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${bookstore.bulk-update.chunk-size:1000}")
+    private int chunkSize;
 
     @GetMapping
     public List<BookDTO> getAllBooks() {
         return bookService.getAllBooks();
     }
 
+    @GetMapping("/suggest")
+    public List<String> suggest(@RequestParam String prefix,
+                                @RequestParam(defaultValue = "10") @Min(1) int limit) {
+        return bookService.suggest(prefix, limit);
+    }
+
     @GetMapping("/{isbn}")
     public BookDTO getBook(@PathVariable String isbn) {
-        try {
-            return bookService.getBook(isbn);
-        }catch (BookNotFoundException ex) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found!", ex);
-        }
+        return bookService.getBook(isbn);
+    }
+
+    @GetMapping("/{isbn}/history")
+    public List<BookHistoryPointDTO> getBookHistory(@PathVariable String isbn,
+                                                    @RequestParam(required = false) Instant from,
+                                                    @RequestParam(required = false) Instant to) {
+        return bookService.getBookHistory(isbn, from, to);
     }
 
     @PostMapping
@@ -48,20 +82,75 @@ public class BookController {
     @PatchMapping("/{isbn}")
     public BookDTO updatePartialBook(@PathVariable String isbn,
                                   @RequestBody UpdateBookDTO bookDTO) {
-        try {
-            return bookService.updateBook(isbn, bookDTO);
-        }catch (BookNotFoundException ex) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Book with the given isbn does not exists!");
+        return bookService.updateBook(isbn, bookDTO);
+    }
+
+    /**
+     * Reads the {@code books} array of the body a chunk at a time and applies
+     * every chunk before reading the next, so a large batch is never held in
+     * memory. A patch failing validation is reported as INVALID rather than
+     * rejecting the batch, whose earlier chunks may be applied already; for the
+     * same reason a body that breaks off mid-way is a 400 that keeps them.
+     */
+    @PatchMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BulkUpdateResultDTO> updatePartialBooks(InputStream body) throws IOException {
+        List<BulkUpdateResultDTO> results = new ArrayList<>();
+        try (JsonArrayReader<BookPatchDTO> patches =
+                     new JsonArrayReader<>(objectMapper, body, "books", BookPatchDTO.class)) {
+            for (List<BookPatchDTO> chunk = patches.next(chunkSize); !chunk.isEmpty(); chunk = patches.next(chunkSize)) {
+                results.addAll(updateValidPatches(chunk));
+            }
+        }
+
+        if (results.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No books to update");
         }
+        return results;
     }
 
     @DeleteMapping("/{isbn}")
     @ResponseStatus(code = HttpStatus.NO_CONTENT)
     public void deleteBook(@PathVariable String isbn) {
-        try{
-            bookService.deleteBook(isbn);
-        }catch (BookNotFoundException ex) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Book with the given isbn does not exists!", ex);
+        bookService.deleteBook(isbn);
+    }
+
+    @ExceptionHandler(BookNotFoundException.class)
+    public void handleBookNotFound(BookNotFoundException ex, HttpServletResponse response) throws IOException {
+        // sendError, so the error page renders the usual error body with the message
+        response.sendError(HttpStatus.NOT_FOUND.value(), ex.getMessage());
+    }
+
+    @ExceptionHandler(JsonProcessingException.class)
+    @ResponseStatus(code = HttpStatus.BAD_REQUEST)
+    public void handleUnreadableBody() {
+    }
+
+    @ExceptionHandler(ConstraintViolationException.class)
+    @ResponseStatus(code = HttpStatus.BAD_REQUEST)
+    public void handleConstraintViolation() {
+    }
+
+    private List<BulkUpdateResultDTO> updateValidPatches(List<BookPatchDTO> chunk) {
+        List<Boolean> valid = chunk.stream()
+                .map(patch -> patch != null && validator.validate(patch).isEmpty())
+                .collect(Collectors.toList());
+        List<BookPatchDTO> validPatches = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (valid.get(i)) {
+                validPatches.add(chunk.get(i));
+            }
+        }
+
+        Iterator<BulkUpdateResultDTO> updated = validPatches.isEmpty()
+                ? Collections.emptyIterator()
+                : bookService.updateBooks(validPatches).iterator();
+        List<BulkUpdateResultDTO> results = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            results.add(valid.get(i)
+                    ? updated.next()
+                    : new BulkUpdateResultDTO(chunk.get(i) == null ? null : chunk.get(i).getIsbn(),
+                            BulkUpdateResultDTO.Status.INVALID));
         }
+        return results;
     }
 }
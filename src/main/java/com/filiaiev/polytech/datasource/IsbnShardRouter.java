@@ -0,0 +1,114 @@
+package com.filiaiev.polytech.datasource;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class IsbnShardRouter implements ShardRouter {
+
+    private final int shardCount;
+    private final ShardingProperties.Strategy strategy;
+    private final List<Map.Entry<String, Integer>> prefixes;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor;
+
+    public IsbnShardRouter(ShardingProperties properties, PlatformTransactionManager transactionManager) {
+        this.shardCount = properties.getShards().size();
+        this.strategy = properties.getStrategy();
+        this.prefixes = properties.getPrefixes().entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<String, Integer> e) -> e.getKey().length()).reversed())
+                .collect(Collectors.toList());
+
+        for (Map.Entry<String, Integer> prefix : prefixes) {
+            if (prefix.getValue() < 0 || prefix.getValue() >= shardCount) {
+                throw new IllegalArgumentException("Isbn prefix " + prefix.getKey()
+                        + " is mapped to unknown shard " + prefix.getValue());
+            }
+        }
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("shard-query-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(shardCount, threadFactory);
+    }
+
+    @Override
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public int shardOf(String isbn) {
+        String normalized = isbn.replace("-", "").replace(" ", "");
+
+        if (strategy == ShardingProperties.Strategy.PREFIX) {
+            for (Map.Entry<String, Integer> prefix : prefixes) {
+                if (normalized.startsWith(prefix.getKey())) {
+                    return prefix.getValue();
+                }
+            }
+        }
+        return Math.floorMod(normalized.hashCode(), shardCount);
+    }
+
+    @Override
+    public ShardScope route(int shard) {
+        return ShardContext.enter(shard);
+    }
+
+    @Override
+    public <T> List<T> scatterGather(Supplier<List<T>> query) {
+        List<T> merged = new ArrayList<>();
+        queryAll(query).forEach(merged::addAll);
+        return merged;
+    }
+
+    @Override
+    public <T> List<T> scatterGather(Supplier<List<T>> query, Comparator<? super T> order) {
+        List<T> merged = scatterGather(query);
+        // TimSort merges the already sorted per-shard runs instead of sorting from scratch
+        merged.sort(order);
+        return merged;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> List<List<T>> queryAll(Supplier<List<T>> query) {
+        List<CompletableFuture<List<T>>> results = IntStream.range(0, shardCount)
+                .mapToObj(shard -> CompletableFuture.supplyAsync(() -> {
+                    try (ShardScope ignored = route(shard)) {
+                        return readOnlyTransaction.execute(status -> query.get());
+                    }
+                }, executor))
+                .collect(Collectors.toList());
+
+        try {
+            return results.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.filiaiev.polytech.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Carries the time of a client's last write in a cookie, so the client keeps
+ * reading from the primary during the read-your-writes window, whichever
+ * instance serves it. The cookie is added as soon as the body or an error
+ * starts to be written, which for a controller returning its result is after
+ * its writes committed, and at the latest when the request ends. Bodies are
+ * passed through as they are written, never buffered.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE_NAME = "bookstore-last-write";
+
+    private static final Set<String> READ_METHODS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "TRACE")));
+
+    private final int cookieMaxAgeSeconds;
+
+    public ReadYourWritesFilter(Duration readYourWritesWindow) {
+        this.cookieMaxAgeSeconds = (int) Math.max(1, (readYourWritesWindow.toMillis() + 999) / 1000);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReplicationContext.Caller caller = ReplicationContext.enter(lastWriteMillis(request));
+
+        if (READ_METHODS.contains(request.getMethod())) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                ReplicationContext.exit();
+            }
+            return;
+        }
+
+        LastWriteCookieResponse cookieResponse = new LastWriteCookieResponse(response, caller);
+        try {
+            chain.doFilter(request, cookieResponse);
+        } finally {
+            ReplicationContext.exit();
+            cookieResponse.addCookieIfWritten();
+        }
+    }
+
+    private static long lastWriteMillis(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        if (cookie == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private final class LastWriteCookieResponse extends HttpServletResponseWrapper {
+
+        private final ReplicationContext.Caller caller;
+        private boolean cookieAdded;
+
+        private LastWriteCookieResponse(HttpServletResponse response, ReplicationContext.Caller caller) {
+            super(response);
+            this.caller = caller;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addCookieIfWritten();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addCookieIfWritten();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addCookieIfWritten();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addCookieIfWritten();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addCookieIfWritten();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addCookieIfWritten();
+            super.sendRedirect(location);
+        }
+
+        private void addCookieIfWritten() {
+            if (cookieAdded || !caller.hasWritten() || isCommitted()) {
+                return;
+            }
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(caller.getLastWriteMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge(cookieMaxAgeSeconds);
+            addCookie(cookie);
+            cookieAdded = true;
+        }
+    }
+}
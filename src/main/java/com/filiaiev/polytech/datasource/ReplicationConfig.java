@@ -0,0 +1,51 @@
+package com.filiaiev.polytech.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(ReplicationProperties.class)
+@ConditionalOnProperty(prefix = "bookstore.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class ReplicationConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookstore.replication", name = "enabled", havingValue = "true")
+    public ReplicationRoutingDataSource replicationRoutingDataSource(DataSourceProperties primaryProperties,
+                                                                    ReplicationProperties properties) {
+        ReplicationProperties.Replica replicaProperties = properties.getReplica();
+        if (replicaProperties.getUrl() == null) {
+            throw new IllegalStateException("Replication is enabled but bookstore.replication.replica.url is not set");
+        }
+
+        DataSource primary = primaryProperties.initializeDataSourceBuilder().build();
+        DataSource replica = DataSourceBuilder.create()
+                .url(replicaProperties.getUrl())
+                .username(replicaProperties.getUsername())
+                .password(replicaProperties.getPassword())
+                .build();
+
+        return new ReplicationRoutingDataSource(primary, replica, properties.getReadYourWritesWindow());
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "bookstore.replication", name = "enabled", havingValue = "true")
+    public DataSource dataSource(ReplicationRoutingDataSource replicationRoutingDataSource) {
+        // defers the routing decision until the transaction's read-only flag is set
+        return new LazyConnectionDataSourceProxy(replicationRoutingDataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookstore.replication", name = "enabled", havingValue = "true")
+    public ReadYourWritesFilter readYourWritesFilter(ReplicationProperties properties) {
+        return new ReadYourWritesFilter(properties.getReadYourWritesWindow());
+    }
+}
@@ -0,0 +1,89 @@
+package com.filiaiev.polytech.datasource;
+
+/**
+ * Holds the caller the current thread works for, so that only that caller's
+ * reads are kept on the primary after it writes. Threads working for no
+ * caller, such as background jobs, read from the replica and their writes
+ * hold back nobody's reads. Scans that must see every committed row, such
+ * as index rebuilds, pin their thread to the primary with {@link #onPrimary}.
+ */
+public final class ReplicationContext {
+
+    private static final ThreadLocal<Caller> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> ON_PRIMARY = new ThreadLocal<>();
+
+    private ReplicationContext() {
+    }
+
+    public static Caller current() {
+        return CURRENT.get();
+    }
+
+    static Caller enter(long lastWriteMillis) {
+        Caller caller = new Caller(lastWriteMillis);
+        CURRENT.set(caller);
+        return caller;
+    }
+
+    static void exit() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Sends every connection the current thread fetches to the primary until
+     * the returned scope is closed, read-only transactions included.
+     */
+    public static Scope onPrimary() {
+        Boolean previous = ON_PRIMARY.get();
+        ON_PRIMARY.set(Boolean.TRUE);
+
+        return () -> {
+            if (previous == null) {
+                ON_PRIMARY.remove();
+            }
+        };
+    }
+
+    static boolean isOnPrimary() {
+        return ON_PRIMARY.get() != null;
+    }
+
+    /**
+     * Ends the pinning to the primary when closed.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    public static final class Caller {
+
+        private long lastWriteMillis;
+        private boolean wrote;
+
+        private Caller(long lastWriteMillis) {
+            this.lastWriteMillis = lastWriteMillis;
+        }
+
+        /**
+         * @return epoch millis of the caller's last write, as far as it is known
+         */
+        public long getLastWriteMillis() {
+            return lastWriteMillis;
+        }
+
+        /**
+         * @return whether the caller wrote since entering the context
+         */
+        public boolean hasWritten() {
+            return wrote;
+        }
+
+        void markWrite() {
+            lastWriteMillis = System.currentTimeMillis();
+            wrote = true;
+        }
+    }
+}
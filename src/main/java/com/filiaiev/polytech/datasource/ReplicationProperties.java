@@ -0,0 +1,34 @@
+package com.filiaiev.polytech.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "bookstore.replication")
+public class ReplicationProperties {
+
+    private boolean enabled;
+
+    private Replica replica = new Replica();
+
+    /**
+     * How long after a client's last write its read-only transactions keep
+     * going to the primary, so it reads its own writes despite replication lag.
+     * The time travels in a cookie, so clients without a cookie jar and
+     * background jobs always read from the replica and may see stale data.
+     * Zero sends every read-only transaction to the replica.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(1);
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username = "sa";
+
+        private String password = "";
+    }
+}
@@ -0,0 +1,81 @@
+package com.filiaiev.polytech.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends connections of read-only transactions to the replica, unless the
+ * current {@link ReplicationContext caller} finished a read-write transaction
+ * within the read-your-writes window or the thread is pinned with
+ * {@link ReplicationContext#onPrimary}. Everything else, including
+ * non-transactional access, goes to the primary.
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    enum Role {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final long readYourWritesWindowMillis;
+
+    public ReplicationRoutingDataSource(DataSource primary, DataSource replica, Duration readYourWritesWindow) {
+        this.primary = primary;
+        this.replica = replica;
+        this.readYourWritesWindowMillis = readYourWritesWindow.toMillis();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Role.PRIMARY, primary);
+        targets.put(Role.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        ReplicationContext.Caller caller = ReplicationContext.current();
+
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return readsFromPrimary() ? Role.PRIMARY : Role.REPLICA;
+        }
+
+        if (caller != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            caller.markWrite();
+            // the window has to start when the write becomes visible, not when it begins
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    caller.markWrite();
+                }
+            });
+        }
+        return Role.PRIMARY;
+    }
+
+    /**
+     * @return whether a read-only transaction the current thread started now would go to the primary
+     */
+    public boolean readsFromPrimary() {
+        ReplicationContext.Caller caller = ReplicationContext.current();
+        return ReplicationContext.isOnPrimary() || caller != null
+                && System.currentTimeMillis() - caller.getLastWriteMillis() < readYourWritesWindowMillis;
+    }
+
+    @Override
+    public void close() {
+        for (DataSource dataSource : new DataSource[]{primary, replica}) {
+            if (dataSource instanceof HikariDataSource) {
+                ((HikariDataSource) dataSource).close();
+            }
+        }
+    }
+}
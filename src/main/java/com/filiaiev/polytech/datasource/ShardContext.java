@@ -0,0 +1,32 @@
+package com.filiaiev.polytech.datasource;
+
+/**
+ * Holds the shard the current thread is routed to. The shard is looked up when
+ * a connection is actually fetched, which the lazy connection proxy in front of
+ * {@link ShardRoutingDataSource} delays until the first statement, so a scope
+ * opened inside a transactional method still picks the connection.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    static ShardScope enter(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+}
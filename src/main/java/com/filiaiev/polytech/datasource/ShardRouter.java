@@ -0,0 +1,29 @@
+package com.filiaiev.polytech.datasource;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+public interface ShardRouter {
+
+    int getShardCount();
+
+    int shardOf(String isbn);
+
+    ShardScope route(int shard);
+
+    default ShardScope route(String isbn) {
+        return route(shardOf(isbn));
+    }
+
+    /**
+     * Runs the query against every shard and concatenates the results in shard order.
+     */
+    <T> List<T> scatterGather(Supplier<List<T>> query);
+
+    /**
+     * Runs the query, which must return rows sorted by {@code order}, against
+     * every shard and merges the results into one sorted list.
+     */
+    <T> List<T> scatterGather(Supplier<List<T>> query, Comparator<? super T> order);
+}
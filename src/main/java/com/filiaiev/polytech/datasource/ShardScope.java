@@ -0,0 +1,11 @@
+package com.filiaiev.polytech.datasource;
+
+/**
+ * Restores the previously routed shard when closed.
+ */
+@FunctionalInterface
+public interface ShardScope extends AutoCloseable {
+
+    @Override
+    void close();
+}
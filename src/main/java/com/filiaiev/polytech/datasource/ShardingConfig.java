@@ -0,0 +1,65 @@
+package com.filiaiev.polytech.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "bookstore.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+    public ShardRouter singleShardRouter() {
+        return new SingleShardRouter();
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "bookstore.sharding", name = "enabled", havingValue = "true")
+    static class ShardedDataSourceConfig {
+
+        @Bean
+        public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties properties) {
+            if (properties.getShards().isEmpty()) {
+                throw new IllegalStateException("Sharding is enabled but no bookstore.sharding.shards are configured");
+            }
+
+            // Hibernate would only generate the schema on the default shard
+            ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("db/shard-schema.sql"));
+            List<DataSource> shards = new ArrayList<>();
+
+            for (ShardingProperties.Shard shard : properties.getShards()) {
+                DataSource dataSource = DataSourceBuilder.create()
+                        .url(shard.getUrl())
+                        .username(shard.getUsername())
+                        .password(shard.getPassword())
+                        .build();
+                schema.execute(dataSource);
+                shards.add(dataSource);
+            }
+            return new ShardRoutingDataSource(shards);
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+            return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+        }
+
+        @Bean
+        public ShardRouter isbnShardRouter(ShardingProperties properties, PlatformTransactionManager transactionManager) {
+            return new IsbnShardRouter(properties, transactionManager);
+        }
+    }
+}
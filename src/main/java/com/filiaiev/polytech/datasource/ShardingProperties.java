@@ -0,0 +1,42 @@
+package com.filiaiev.polytech.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "bookstore.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    private Strategy strategy = Strategy.HASH;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Isbn prefix (registration group or publisher) to shard index, used by the
+     * {@link Strategy#PREFIX} strategy. The longest matching prefix wins,
+     * isbns matching none of them are hashed.
+     */
+    private Map<String, Integer> prefixes = new LinkedHashMap<>();
+
+    public enum Strategy {
+        HASH,
+        PREFIX
+    }
+
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username = "sa";
+
+        private String password = "";
+    }
+}
@@ -0,0 +1,33 @@
+package com.filiaiev.polytech.datasource;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class SingleShardRouter implements ShardRouter {
+
+    @Override
+    public int getShardCount() {
+        return 1;
+    }
+
+    @Override
+    public int shardOf(String isbn) {
+        return 0;
+    }
+
+    @Override
+    public ShardScope route(int shard) {
+        return () -> { };
+    }
+
+    @Override
+    public <T> List<T> scatterGather(Supplier<List<T>> query) {
+        return query.get();
+    }
+
+    @Override
+    public <T> List<T> scatterGather(Supplier<List<T>> query, Comparator<? super T> order) {
+        return query.get();
+    }
+}
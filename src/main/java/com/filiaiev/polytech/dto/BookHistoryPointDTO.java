@@ -0,0 +1,22 @@
+package com.filiaiev.polytech.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class BookHistoryPointDTO {
+
+    private Instant timestamp;
+
+    private BigDecimal basePrice;
+
+    private Integer quantity;
+}
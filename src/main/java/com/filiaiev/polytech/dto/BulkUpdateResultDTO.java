@@ -0,0 +1,25 @@
+package com.filiaiev.polytech.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class BulkUpdateResultDTO {
+
+    private String isbn;
+
+    private Status status;
+
+    public enum Status {
+        UPDATED,
+        NOT_FOUND,
+        SKIPPED,
+        FAILED,
+        INVALID
+    }
+}
@@ -1,4 +1,9 @@
 package com.filiaiev.polytech.exception;
 
 public class BookNotFoundException extends RuntimeException {
+
+    // Thrown for every miss, so skip the stack trace nobody reads
+    public BookNotFoundException() {
+        super("Book with the given isbn does not exists!", null, false, false);
+    }
 }
@@ -4,6 +4,7 @@ import com.filiaiev.polytech.dto.BookDTO;
 import com.filiaiev.polytech.dto.UpdateBookDTO;
 import com.filiaiev.polytech.model.Book;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.factory.Mappers;
 
 @Mapper(componentModel = "spring")
@@ -16,4 +17,7 @@ public interface BookMapper {
     BookDTO bookToBookDTO(Book book);
 
     BookDTO updateBookDTOtoBookDTO(UpdateBookDTO bookDTO);
+
+    @Mapping(target = "isbn", ignore = true)
+    Book updateBookDTOtoBook(UpdateBookDTO bookDTO);
 }
\ No newline at end of file
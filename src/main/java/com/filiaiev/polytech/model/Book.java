@@ -1,13 +1,22 @@
 package com.filiaiev.polytech.model;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
@@ -16,7 +25,7 @@ import java.time.LocalDate;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class Book {
+public class Book implements Persistable<String> {
 
     @Id
     private String isbn;
@@ -41,4 +50,37 @@ public class Book {
 
     @Column(nullable = false)
     private String authorName;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean isNew;
+
+    @Override
+    public String getId() {
+        return isbn;
+    }
+
+    /**
+     * The isbn is assigned, so Spring Data cannot tell a new book from a
+     * detached one and merges, which selects the row first. Books marked
+     * new are persisted straight away instead.
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public Book markNew() {
+        isNew = true;
+        return this;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
 }
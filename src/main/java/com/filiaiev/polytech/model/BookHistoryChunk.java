@@ -0,0 +1,45 @@
+package com.filiaiev.polytech.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+/**
+ * A chunk of delta encoded price and stock history of one isbn, covering the
+ * points with {@code minTs <= timestamp <= maxTs}. Timestamps are epoch millis.
+ */
+@Entity
+@Table(name = "book_history", indexes = @Index(name = "book_history_isbn_max_ts", columnList = "isbn, maxTs"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookHistoryChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String isbn;
+
+    @Column(nullable = false)
+    private Long minTs;
+
+    @Column(nullable = false)
+    private Long maxTs;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] payload;
+}
@@ -0,0 +1,25 @@
+package com.filiaiev.polytech.repository;
+
+import com.filiaiev.polytech.model.Book;
+
+import java.util.List;
+import java.util.Set;
+
+public interface BookBatchRepository {
+
+    /**
+     * Writes only the given properties of every book with a single batched
+     * {@code UPDATE ... WHERE isbn = ?} statement, committing once per chunk.
+     * A chunk rejected for bad data is retried row by row; a chunk failing for
+     * any other reason is skipped. Earlier chunks stay committed either way.
+     *
+     * @return number of updated rows for each book, in the order of {@code books},
+     * or {@link java.sql.Statement#EXECUTE_FAILED} for a book that could not be written
+     */
+    int[] updateAll(Set<String> properties, List<Book> books);
+
+    /**
+     * Inserts all books with a single multi-row {@code INSERT} statement.
+     */
+    void insertAll(List<Book> books);
+}
@@ -0,0 +1,106 @@
+package com.filiaiev.polytech.repository;
+
+import com.filiaiev.polytech.model.Book;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@RequiredArgsConstructor
+public class BookBatchRepositoryImpl implements BookBatchRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${bookstore.bulk-update.chunk-size:1000}")
+    private int chunkSize;
+
+    @Override
+    public int[] updateAll(Set<String> properties, List<Book> books) {
+        String sql = updateStatement(properties);
+        int[] counts = new int[books.size()];
+
+        for (int from = 0; from < books.size(); from += chunkSize) {
+            SqlParameterSource[] chunk = books.subList(from, Math.min(from + chunkSize, books.size())).stream()
+                    .map(BeanPropertySqlParameterSource::new)
+                    .toArray(SqlParameterSource[]::new);
+
+            int[] chunkCounts = updateChunk(sql, chunk);
+            System.arraycopy(chunkCounts, 0, counts, from, chunkCounts.length);
+        }
+        return counts;
+    }
+
+    private int[] updateChunk(String sql, SqlParameterSource[] chunk) {
+        try {
+            return transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(sql, chunk));
+        } catch (DataIntegrityViolationException ex) {
+            // some row carries a value the column rejects; find it instead of failing the whole chunk
+            log.warn("Batched update of {} books failed, retrying them one by one: {}", chunk.length, ex.getMessage());
+            return updateOneByOne(sql, chunk);
+        } catch (DataAccessException ex) {
+            log.error("Batched update of {} books failed", chunk.length, ex);
+            int[] failed = new int[chunk.length];
+            Arrays.fill(failed, Statement.EXECUTE_FAILED);
+            return failed;
+        }
+    }
+
+    private int[] updateOneByOne(String sql, SqlParameterSource[] chunk) {
+        int[] counts = new int[chunk.length];
+
+        for (int i = 0; i < chunk.length; i++) {
+            SqlParameterSource row = chunk[i];
+            try {
+                counts[i] = transactionTemplate.execute(status -> jdbcTemplate.update(sql, row));
+            } catch (DataAccessException ex) {
+                log.warn("Update of book {} failed: {}", row.getValue("isbn"), ex.getMessage());
+                counts[i] = Statement.EXECUTE_FAILED;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void insertAll(List<Book> books) {
+        StringBuilder sql = new StringBuilder("INSERT INTO book (isbn, title, genre_name, pages, base_price, "
+                + "quantity, publish_date, author_name) VALUES ");
+        List<Object> args = new ArrayList<>(books.size() * 8);
+
+        for (Book book : books) {
+            sql.append(args.isEmpty() ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?)");
+            args.add(book.getIsbn());
+            args.add(book.getTitle());
+            args.add(book.getGenreName());
+            args.add(book.getPages());
+            args.add(book.getBasePrice());
+            args.add(book.getQuantity());
+            args.add(book.getPublishDate());
+            args.add(book.getAuthorName());
+        }
+        jdbcTemplate.getJdbcTemplate().update(sql.toString(), args.toArray());
+    }
+
+    private static String updateStatement(Set<String> properties) {
+        return properties.stream()
+                .map(property -> toColumnName(property) + " = :" + property)
+                .collect(Collectors.joining(", ", "UPDATE book SET ", " WHERE isbn = :isbn"));
+    }
+
+    private static String toColumnName(String property) {
+        return property.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
@@ -0,0 +1,19 @@
+package com.filiaiev.polytech.repository;
+
+import com.filiaiev.polytech.model.BookHistoryChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookHistoryChunkRepository extends JpaRepository<BookHistoryChunk, Long> {
+
+    @Query("select c from BookHistoryChunk c where c.isbn = :isbn and c.maxTs >= :from and c.minTs < :to " +
+            "order by c.id")
+    List<BookHistoryChunk> findOverlapping(String isbn, long from, long to);
+
+    Optional<BookHistoryChunk> findFirstByIsbnAndMinTsLessThanOrderByMinTsDesc(String isbn, long minTs);
+}
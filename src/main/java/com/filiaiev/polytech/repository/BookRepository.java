@@ -2,8 +2,28 @@ package com.filiaiev.polytech.repository;
 
 import com.filiaiev.polytech.model.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
-public interface BookRepository extends JpaRepository<Book, String> {
+public interface BookRepository extends JpaRepository<Book, String>, BookBatchRepository {
+
+    @Query("select b.isbn from Book b")
+    List<String> findAllIsbns();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select b.isbn as isbn, b.title as title, b.authorName as authorName, b.quantity as quantity from Book b")
+    Stream<BookSuggestionView> streamSuggestionViews();
+
+    @Modifying
+    @Query("delete from Book b where b.isbn = :isbn")
+    int deleteByIsbn(String isbn);
 }
@@ -0,0 +1,15 @@
+package com.filiaiev.polytech.repository;
+
+/**
+ * The columns of a book the suggestion index is built from.
+ */
+public interface BookSuggestionView {
+
+    String getIsbn();
+
+    String getTitle();
+
+    String getAuthorName();
+
+    Integer getQuantity();
+}
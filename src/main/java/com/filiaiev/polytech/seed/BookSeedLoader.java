@@ -0,0 +1,293 @@
+package com.filiaiev.polytech.seed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.filiaiev.polytech.datasource.ShardRouter;
+import com.filiaiev.polytech.datasource.ShardScope;
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.mapper.BookMapper;
+import com.filiaiev.polytech.model.Book;
+import com.filiaiev.polytech.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Seeds the catalog from a large CSV or NDJSON file instead of data.sql. The
+ * file is memory-mapped and cut into line-aligned slices which a fork-join
+ * pool parses, validates and inserts with multi-row statements in parallel.
+ * Readiness is set to refusing traffic while the seed loads and to accepting
+ * traffic once it is loaded, so probes keep the instance out of rotation
+ * meanwhile. Any failed insert, e.g. a duplicate isbn, aborts startup.
+ */
+@Slf4j
+@Component
+@Profile("seed")
+@EnableConfigurationProperties(SeedProperties.class)
+@RequiredArgsConstructor
+public class BookSeedLoader implements ApplicationRunner {
+
+    private final SeedProperties properties;
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (properties.getLocation() == null) {
+            throw new IllegalStateException("Seeding is enabled but bookstore.seed.location is not set");
+        }
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        load();
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    private void load() throws IOException {
+        Resource resource = resourceLoader.getResource(properties.getLocation());
+        SeedProperties.Format format = properties.getFormat() != null
+                ? properties.getFormat()
+                : properties.getLocation().toLowerCase(Locale.ROOT).endsWith(".csv")
+                        ? SeedProperties.Format.CSV
+                        : SeedProperties.Format.NDJSON;
+
+        long started = System.nanoTime();
+        Path file = resource.isFile() ? resource.getFile().toPath() : copyToTempFile(resource);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long dataStart = 0;
+            Function<String, BookDTO> parser;
+
+            if (format == SeedProperties.Format.CSV) {
+                dataStart = nextLineStart(channel, 0);
+                CsvBookParser csvParser = new CsvBookParser(readLine(channel, 0, dataStart));
+                parser = csvParser::parse;
+            } else {
+                parser = this::parseJson;
+            }
+
+            List<long[]> slices = slice(channel, dataStart);
+            ForkJoinPool pool = new ForkJoinPool(properties.getParallelism(), this::newWorker, null, false);
+            LoadStats stats;
+            try {
+                stats = pool.invoke(new LoadSlicesTask(channel, slices, 0, slices.size(), parser));
+            } finally {
+                pool.shutdown();
+            }
+
+            double seconds = (System.nanoTime() - started) / 1e9;
+            log.info("Seeded {} books from {} in {} s ({} rows/s), skipped {} invalid rows",
+                    stats.inserted, properties.getLocation(), String.format("%.2f", seconds),
+                    Math.round(stats.inserted / Math.max(seconds, 1e-9)), stats.invalid);
+        } finally {
+            if (!resource.isFile()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // workers need the application class loader for bean validation to find its providers
+    private ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setContextClassLoader(getClass().getClassLoader());
+        return worker;
+    }
+
+    private BookDTO parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, BookDTO.class);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private List<long[]> slice(FileChannel channel, long dataStart) throws IOException {
+        List<long[]> slices = new ArrayList<>();
+        long size = channel.size();
+        long start = dataStart;
+
+        while (start < size) {
+            long end = start + properties.getSliceSize() >= size
+                    ? size
+                    : nextLineStart(channel, start + properties.getSliceSize());
+            slices.add(new long[]{start, end});
+            start = end;
+        }
+        return slices;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long offset = position;
+
+        while (offset < channel.size()) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return channel.size();
+    }
+
+    private static String readLine(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        channel.read(buffer, start);
+        return new String(buffer.array(), StandardCharsets.UTF_8).trim();
+    }
+
+    private static Path copyToTempFile(Resource resource) throws IOException {
+        Path file = Files.createTempFile("bookstore-seed", null);
+        try (InputStream in = resource.getInputStream()) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    private static class LoadStats {
+
+        private long inserted;
+        private long invalid;
+
+        private LoadStats add(LoadStats other) {
+            inserted += other.inserted;
+            invalid += other.invalid;
+            return this;
+        }
+    }
+
+    private class LoadSlicesTask extends RecursiveTask<LoadStats> {
+
+        private final FileChannel channel;
+        private final List<long[]> slices;
+        private final int from;
+        private final int to;
+        private final Function<String, BookDTO> parser;
+
+        private LoadSlicesTask(FileChannel channel, List<long[]> slices, int from, int to,
+                               Function<String, BookDTO> parser) {
+            this.channel = channel;
+            this.slices = slices;
+            this.from = from;
+            this.to = to;
+            this.parser = parser;
+        }
+
+        @Override
+        protected LoadStats compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                LoadSlicesTask left = new LoadSlicesTask(channel, slices, from, middle, parser);
+                left.fork();
+                LoadStats right = new LoadSlicesTask(channel, slices, middle, to, parser).compute();
+                return right.add(left.join());
+            }
+            if (to == from) {
+                return new LoadStats();
+            }
+
+            long[] slice = slices.get(from);
+            try {
+                return load(channel.map(FileChannel.MapMode.READ_ONLY, slice[0], slice[1] - slice[0]));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private LoadStats load(MappedByteBuffer buffer) {
+            LoadStats stats = new LoadStats();
+            Map<Integer, List<Book>> batches = new HashMap<>();
+            ByteBuffer reader = buffer.duplicate();
+            int limit = buffer.limit();
+            int lineStart = 0;
+
+            for (int i = 0; i <= limit; i++) {
+                if (i < limit && buffer.get(i) != '\n') {
+                    continue;
+                }
+                int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                if (lineEnd > lineStart) {
+                    byte[] line = new byte[lineEnd - lineStart];
+                    reader.position(lineStart);
+                    reader.get(line);
+                    Book book = toValidBook(new String(line, StandardCharsets.UTF_8));
+
+                    if (book == null) {
+                        stats.invalid++;
+                    } else {
+                        List<Book> batch = batches.computeIfAbsent(shardRouter.shardOf(book.getIsbn()),
+                                shard -> new ArrayList<>(properties.getBatchSize()));
+                        batch.add(book);
+                        if (batch.size() >= properties.getBatchSize()) {
+                            stats.inserted += insert(batch);
+                        }
+                    }
+                }
+                lineStart = i + 1;
+            }
+
+            batches.values().forEach(batch -> stats.inserted += insert(batch));
+            return stats;
+        }
+
+        private Book toValidBook(String line) {
+            try {
+                BookDTO book = parser.apply(line);
+                if (validator.validate(book).isEmpty()) {
+                    return BookMapper.INSTANCE.bookDTOtoBook(book);
+                }
+                log.debug("Skipping invalid seed row: {}", line);
+            } catch (RuntimeException ex) {
+                log.debug("Skipping unparsable seed row: {}", line, ex);
+            }
+            return null;
+        }
+
+        private int insert(List<Book> batch) {
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            int inserted = batch.size();
+            try (ShardScope ignored = shardRouter.route(batch.get(0).getIsbn())) {
+                bookRepository.insertAll(batch);
+            }
+            batch.clear();
+            return inserted;
+        }
+    }
+}
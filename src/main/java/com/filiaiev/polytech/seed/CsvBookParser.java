@@ -0,0 +1,81 @@
+package com.filiaiev.polytech.seed;
+
+import com.filiaiev.polytech.dto.BookDTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses single-line CSV records into books, taking the column order from the
+ * header. Headers may use either the column or the property names, e.g.
+ * {@code base_price} or {@code basePrice}. Quoted values may contain commas
+ * and doubled quotes, but not line breaks.
+ */
+class CsvBookParser {
+
+    private final String[] columns;
+
+    CsvBookParser(String header) {
+        List<String> names = split(header);
+        this.columns = new String[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = names.get(i).replace("_", "").trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    BookDTO parse(String line) {
+        List<String> values = split(line);
+        if (values.size() != columns.length) {
+            throw new IllegalArgumentException("Expected " + columns.length + " values but got " + values.size());
+        }
+
+        BookDTO book = new BookDTO();
+        for (int i = 0; i < columns.length; i++) {
+            String value = values.get(i);
+            switch (columns[i]) {
+                case "isbn": book.setIsbn(value); break;
+                case "title": book.setTitle(value); break;
+                case "genrename": book.setGenreName(value); break;
+                case "pages": book.setPages(Integer.valueOf(value)); break;
+                case "baseprice": book.setBasePrice(new BigDecimal(value)); break;
+                case "quantity": book.setQuantity(Integer.valueOf(value)); break;
+                case "publishdate": book.setPublishDate(LocalDate.parse(value)); break;
+                case "authorname": book.setAuthorName(value); break;
+                default: break;
+            }
+        }
+        return book;
+    }
+
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
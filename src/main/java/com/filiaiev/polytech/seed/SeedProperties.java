@@ -0,0 +1,36 @@
+package com.filiaiev.polytech.seed;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "bookstore.seed")
+public class SeedProperties {
+
+    /**
+     * CSV file with a header row, or NDJSON file with one book object per line.
+     */
+    private String location;
+
+    /**
+     * Detected from the file extension when not set.
+     */
+    private Format format;
+
+    /**
+     * Rows per multi-row insert statement.
+     */
+    private int batchSize = 500;
+
+    /**
+     * The file is split into slices of about this many bytes, parsed in parallel.
+     */
+    private int sliceSize = 8 * 1024 * 1024;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+}
@@ -0,0 +1,26 @@
+package com.filiaiev.polytech.service;
+
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+public interface BookHistoryService {
+
+    /**
+     * Queues the book's current price and stock; returns without waiting for it to be stored,
+     * but may wait a moment for room in the queue.
+     */
+    default void record(BookDTO book) {
+        record(book.getIsbn(), book.getBasePrice(), book.getQuantity());
+    }
+
+    /**
+     * Like {@link #record(BookDTO)}, with {@code null} for a value that did not change.
+     */
+    void record(String isbn, BigDecimal basePrice, Integer quantity);
+
+    List<BookHistoryPointDTO> getHistory(String isbn, Instant from, Instant to);
+}
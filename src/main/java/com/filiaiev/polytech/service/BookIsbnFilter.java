@@ -0,0 +1,17 @@
+package com.filiaiev.polytech.service;
+
+public interface BookIsbnFilter {
+
+    /**
+     * A hint only: books created by other instances or outside the service are
+     * not seen until the next rebuild, so {@code false} must not be taken as
+     * proof that the book is missing.
+     *
+     * @return {@code false} if the isbn was not stored as far as this instance knows
+     */
+    boolean mightContain(String isbn);
+
+    void add(String isbn);
+
+    void rebuild();
+}
@@ -1,8 +1,12 @@
 package com.filiaiev.polytech.service;
 
 import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+import com.filiaiev.polytech.dto.BookPatchDTO;
+import com.filiaiev.polytech.dto.BulkUpdateResultDTO;
 import com.filiaiev.polytech.dto.UpdateBookDTO;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface BookService {
@@ -17,5 +21,11 @@ public interface BookService {
 
     BookDTO updateBook(String isbn, UpdateBookDTO bookDTO);
 
+    List<BulkUpdateResultDTO> updateBooks(List<BookPatchDTO> patches);
+
     void deleteBook(String isbn);
+
+    List<String> suggest(String prefix, int limit);
+
+    List<BookHistoryPointDTO> getBookHistory(String isbn, Instant from, Instant to);
 }
@@ -0,0 +1,26 @@
+package com.filiaiev.polytech.service;
+
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.UpdateBookDTO;
+
+import java.util.List;
+
+public interface BookSuggestionIndex {
+
+    /**
+     * @return titles and author names starting with the prefix, most stocked first
+     */
+    List<String> suggest(String prefix, int limit);
+
+    void index(BookDTO book);
+
+    /**
+     * Applies the title, author name and stock present in the patch to an
+     * indexed book; fields the patch leaves out keep their indexed value.
+     */
+    void reindex(String isbn, UpdateBookDTO patch);
+
+    void remove(String isbn);
+
+    void rebuild();
+}
@@ -0,0 +1,391 @@
+package com.filiaiev.polytech.service.impl;
+
+import com.filiaiev.polytech.datasource.ShardRouter;
+import com.filiaiev.polytech.datasource.ShardScope;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+import com.filiaiev.polytech.model.BookHistoryChunk;
+import com.filiaiev.polytech.repository.BookHistoryChunkRepository;
+import com.filiaiev.polytech.service.BookHistoryService;
+import com.filiaiev.polytech.util.DeltaEncodedSeries;
+import com.filiaiev.polytech.util.DeltaEncodedSeries.EncodedChunk;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a price and stock history per isbn in the book_history table, outside
+ * the book table. Writers only offer a change to a bounded queue; a single
+ * thread appends the changes to the open {@link DeltaEncodedSeries} chunk of
+ * the isbn and, every flush interval, seals the chunks that changed and
+ * inserts them as new rows, so stored rows are never rewritten. An isbn left
+ * unchanged for the evict-after period is dropped from memory. When the queue
+ * is full a writer waits up to the offer timeout for room, then the change is
+ * dropped and counted. Points are ordered by time and, within a millisecond,
+ * by the order they were recorded in. A change may leave out a value that did
+ * not change; it is carried over from the previous point when the history is
+ * read, or shown as unknown if there is none. Changes not flushed yet are only
+ * visible on this instance and are lost if it stops without shutting down.
+ */
+@Slf4j
+@Service
+public class BookHistoryServiceImpl implements BookHistoryService {
+
+    private static final int PRICE_SCALE = 2;
+    private static final int VALUE_COUNT = 2;
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final BookHistoryChunkRepository chunkRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+    private final BlockingQueue<Change> changes;
+    private final int pointsPerChunk;
+    private final long flushIntervalMillis;
+    private final long evictAfterMillis;
+    private final long offerTimeoutMillis;
+    private final ConcurrentMap<String, OpenSeries> series = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running;
+    private Thread writer;
+
+    public BookHistoryServiceImpl(BookHistoryChunkRepository chunkRepository, ShardRouter shardRouter,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${bookstore.history.queue-capacity:100000}") int queueCapacity,
+                                  @Value("${bookstore.history.points-per-chunk:128}") int pointsPerChunk,
+                                  @Value("${bookstore.history.flush-interval:5s}") Duration flushInterval,
+                                  @Value("${bookstore.history.evict-after:10m}") Duration evictAfter,
+                                  @Value("${bookstore.history.offer-timeout:50ms}") Duration offerTimeout) {
+        this.chunkRepository = chunkRepository;
+        this.shardRouter = shardRouter;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.changes = new ArrayBlockingQueue<>(queueCapacity);
+        this.pointsPerChunk = pointsPerChunk;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        this.evictAfterMillis = evictAfter.toMillis();
+        this.offerTimeoutMillis = offerTimeout.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "book-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer and flushes what it left behind, so a clean shutdown
+     * loses no history.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join();
+
+        List<Change> rest = new ArrayList<>();
+        changes.drainTo(rest);
+        rest.forEach(this::append);
+        flush();
+    }
+
+    @Override
+    public void record(String isbn, BigDecimal basePrice, Integer quantity) {
+        Change change = new Change(isbn, System.currentTimeMillis(),
+                basePrice == null
+                        ? null
+                        : basePrice.setScale(PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+                quantity == null ? null : quantity.longValue());
+
+        boolean queued;
+        try {
+            queued = changes.offer(change, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            log.warn("History queue is full, dropped the change of book {}, {} changes dropped so far",
+                    isbn, dropped.incrementAndGet());
+        }
+    }
+
+    /**
+     * @return how many changes were dropped because the queue was full
+     */
+    public long getDroppedChanges() {
+        return dropped.get();
+    }
+
+    /**
+     * Reads the stored chunks overlapping the range together with the chunks
+     * still held in memory, whose stored copy is skipped. Values left out by
+     * partial changes are filled from earlier points, reading older chunks
+     * only while the first point still misses a value.
+     */
+    @Override
+    public List<BookHistoryPointDTO> getHistory(String isbn, Instant from, Instant to) {
+        long fromMillis = from == null ? Long.MIN_VALUE : from.toEpochMilli();
+        long toMillis = to == null ? Long.MAX_VALUE : to.toEpochMilli();
+
+        List<long[]> heldPoints = new ArrayList<>();
+        List<byte[]> heldPayloads = new ArrayList<>();
+        OpenSeries held = series.get(isbn);
+        if (held != null) {
+            synchronized (held) {
+                held.series.forEachBetween(Long.MIN_VALUE, toMillis, collectInto(heldPoints, toMillis));
+                held.series.sealedChunks().forEach(chunk -> heldPayloads.add(chunk.getPayload()));
+            }
+        }
+
+        List<long[]> points = new ArrayList<>();
+        long[] carried;
+        try (ShardScope ignored = shardRouter.route(isbn)) {
+            carried = readOnlyTransaction.execute(status ->
+                    readStored(isbn, fromMillis, toMillis, heldPoints, heldPayloads, points));
+        }
+        return toHistory(points, carried, fromMillis);
+    }
+
+    private void drain() {
+        List<Change> batch = new ArrayList<>();
+        long nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+        try {
+            while (running) {
+                Change change = changes.poll(
+                        Math.max(0, nextFlush - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (change != null) {
+                    batch.add(change);
+                    changes.drainTo(batch);
+                    batch.forEach(this::append);
+                    batch.clear();
+                }
+                if (System.currentTimeMillis() >= nextFlush) {
+                    flush();
+                    nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append(Change change) {
+        OpenSeries open = series.computeIfAbsent(change.isbn, OpenSeries::new);
+        synchronized (open) {
+            // changes may be queued out of time order; never let a point go back before the previous one
+            long timestamp = Math.max(change.timestamp, open.lastChangeMillis);
+            long[] previous = open.series.lastValues();
+            if (open.series.appendIfChanged(timestamp,
+                    valueOrPrevious(change.price, previous, 0),
+                    valueOrPrevious(change.quantity, previous, 1))) {
+                open.dirty = true;
+            }
+            open.lastChangeMillis = timestamp;
+        }
+    }
+
+    private static long valueOrPrevious(Long value, long[] previous, int index) {
+        if (value != null) {
+            return value;
+        }
+        return previous == null ? UNKNOWN : previous[index];
+    }
+
+    // only ever called by the thread appending, so the chunks cannot change while they are written
+    private void flush() {
+        long evictBefore = System.currentTimeMillis() - evictAfterMillis;
+        Map<Integer, List<OpenSeries>> dirtyByShard = new HashMap<>();
+        for (Iterator<OpenSeries> it = series.values().iterator(); it.hasNext(); ) {
+            OpenSeries open = it.next();
+            if (open.dirty) {
+                dirtyByShard.computeIfAbsent(shardRouter.shardOf(open.isbn), shard -> new ArrayList<>()).add(open);
+            } else if (open.lastChangeMillis < evictBefore) {
+                it.remove();
+            }
+        }
+
+        dirtyByShard.forEach((shard, dirty) -> {
+            List<Runnable> afterCommit = new ArrayList<>();
+            try (ShardScope ignored = shardRouter.route(shard)) {
+                transaction.executeWithoutResult(status -> dirty.forEach(open -> afterCommit.add(write(open))));
+                afterCommit.forEach(Runnable::run);
+            } catch (RuntimeException ex) {
+                log.error("Writing the history of {} books failed, retrying with the next flush", dirty.size(), ex);
+            }
+        });
+    }
+
+    /**
+     * Seals the open chunk and inserts every sealed chunk as a new row.
+     *
+     * @return what to forget once the transaction commits
+     */
+    private Runnable write(OpenSeries open) {
+        List<EncodedChunk> sealed;
+        synchronized (open) {
+            open.series.sealOpen();
+            sealed = new ArrayList<>(open.series.sealedChunks());
+        }
+
+        for (EncodedChunk chunk : sealed) {
+            chunkRepository.save(BookHistoryChunk.builder()
+                    .isbn(open.isbn)
+                    .minTs(chunk.getMinTimestamp())
+                    .maxTs(chunk.getMaxTimestamp())
+                    .payload(chunk.getPayload()).build());
+        }
+
+        return () -> {
+            synchronized (open) {
+                open.series.dropSealed(sealed.size());
+                open.dirty = false;
+            }
+        };
+    }
+
+    /**
+     * Collects the stored points before {@code to} followed by the held ones
+     * and sorts them by time. Rows of chunks still held, as a flush committed
+     * them after they were read from memory, are skipped. The sort is stable
+     * and rows are read in insertion order, so points of the same millisecond
+     * keep the order they were recorded in.
+     *
+     * @return the last known values before the first point
+     */
+    private long[] readStored(String isbn, long from, long to, List<long[]> heldPoints, List<byte[]> heldPayloads,
+                              List<long[]> points) {
+        long earliest = heldPoints.isEmpty() ? Long.MAX_VALUE : heldPoints.get(0)[0];
+        for (BookHistoryChunk chunk : chunkRepository.findOverlapping(isbn, from, to)) {
+            if (!isHeld(chunk, heldPayloads)) {
+                DeltaEncodedSeries.decode(chunk.getPayload(), collectInto(points, to));
+                earliest = Math.min(earliest, chunk.getMinTs());
+            }
+        }
+        points.addAll(heldPoints);
+        points.sort(Comparator.comparingLong(point -> point[0]));
+
+        long[] carried = new long[VALUE_COUNT];
+        Arrays.fill(carried, UNKNOWN);
+        while (!points.isEmpty() && missesCarriedValue(points.get(0), carried)) {
+            Optional<BookHistoryChunk> older =
+                    chunkRepository.findFirstByIsbnAndMinTsLessThanOrderByMinTsDesc(isbn, earliest);
+            if (!older.isPresent()) {
+                break;
+            }
+            earliest = older.get().getMinTs();
+            if (isHeld(older.get(), heldPayloads)) {
+                continue;
+            }
+
+            List<long[]> olderPoints = new ArrayList<>();
+            DeltaEncodedSeries.decode(older.get().getPayload(), collectInto(olderPoints, Long.MAX_VALUE));
+            olderPoints.sort(Comparator.comparingLong(point -> point[0]));
+            for (int i = olderPoints.size() - 1; i >= 0; i--) {
+                for (int value = 0; value < VALUE_COUNT; value++) {
+                    if (carried[value] == UNKNOWN) {
+                        carried[value] = olderPoints.get(i)[value + 1];
+                    }
+                }
+            }
+        }
+        return carried;
+    }
+
+    private static boolean isHeld(BookHistoryChunk chunk, List<byte[]> heldPayloads) {
+        return heldPayloads.stream().anyMatch(payload -> Arrays.equals(payload, chunk.getPayload()));
+    }
+
+    private static boolean missesCarriedValue(long[] point, long[] carried) {
+        for (int value = 0; value < VALUE_COUNT; value++) {
+            if (point[value + 1] == UNKNOWN && carried[value] == UNKNOWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static DeltaEncodedSeries.PointConsumer collectInto(List<long[]> points, long to) {
+        return (timestamp, values) -> {
+            if (timestamp < to) {
+                points.add(new long[]{timestamp, values[0], values[1]});
+            }
+        };
+    }
+
+    /**
+     * Fills the values each point left out and drops points that change
+     * nothing once filled, like a partial change repeating a value.
+     */
+    private static List<BookHistoryPointDTO> toHistory(List<long[]> points, long[] carried, long from) {
+        List<BookHistoryPointDTO> history = new ArrayList<>();
+        long[] values = carried.clone();
+        long[] previous = carried.clone();
+        for (long[] point : points) {
+            for (int value = 0; value < VALUE_COUNT; value++) {
+                if (point[value + 1] != UNKNOWN) {
+                    values[value] = point[value + 1];
+                }
+            }
+            if (Arrays.equals(values, previous)) {
+                continue;
+            }
+
+            System.arraycopy(values, 0, previous, 0, VALUE_COUNT);
+            if (point[0] >= from) {
+                history.add(new BookHistoryPointDTO(
+                        Instant.ofEpochMilli(point[0]),
+                        values[0] == UNKNOWN ? null : BigDecimal.valueOf(values[0], PRICE_SCALE),
+                        values[1] == UNKNOWN ? null : (int) values[1]));
+            }
+        }
+        return history;
+    }
+
+    private final class OpenSeries {
+
+        private final String isbn;
+        private final DeltaEncodedSeries series = new DeltaEncodedSeries(VALUE_COUNT, pointsPerChunk);
+        private boolean dirty;
+        private long lastChangeMillis;
+
+        private OpenSeries(String isbn) {
+            this.isbn = isbn;
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Change {
+
+        private final String isbn;
+        private final long timestamp;
+        private final Long price;
+        private final Long quantity;
+    }
+}
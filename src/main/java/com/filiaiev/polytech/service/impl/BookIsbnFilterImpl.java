@@ -0,0 +1,114 @@
+package com.filiaiev.polytech.service.impl;
+
+import com.filiaiev.polytech.datasource.ReplicationContext;
+import com.filiaiev.polytech.datasource.ShardRouter;
+import com.filiaiev.polytech.repository.BookRepository;
+import com.filiaiev.polytech.service.BookIsbnFilter;
+import com.filiaiev.polytech.util.BloomFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps every isbn stored through this instance, and every isbn found by the
+ * last rebuild, in a Bloom filter. Deleted books are never removed. Until the
+ * first rebuild every isbn is reported as possibly present. Rebuilds triggered
+ * by outgrowing the filter run on their own thread, off the common pool.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookIsbnFilterImpl implements BookIsbnFilter {
+
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+
+    @Value("${bookstore.isbn-filter.min-capacity:10000}")
+    private long minCapacity;
+
+    @Value("${bookstore.isbn-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter pendingFilter;
+    private final AtomicLong insertions = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "isbn-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public boolean mightContain(String isbn) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(isbn);
+    }
+
+    @Override
+    public void add(String isbn) {
+        BloomFilter pending = pendingFilter;
+        if (pending != null) {
+            pending.add(isbn);
+        }
+
+        BloomFilter current = filter;
+        if (current != null) {
+            current.add(isbn);
+            if (insertions.incrementAndGet() > current.getExpectedInsertions()
+                    && rebuilding.compareAndSet(false, true)) {
+                CompletableFuture.runAsync(this::rebuildNow, rebuildExecutor)
+                        .whenComplete((ignored, ex) -> {
+                            if (ex != null) {
+                                log.error("Background isbn filter rebuild failed, keeping the current filter", ex);
+                            }
+                        });
+            }
+        }
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (rebuilding.compareAndSet(false, true)) {
+            rebuildNow();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void rebuildNow() {
+        // a replica lagging behind would leave out the latest books
+        try (ReplicationContext.Scope ignored = ReplicationContext.onPrimary()) {
+            long count = shardRouter.scatterGather(() -> Collections.singletonList(bookRepository.count())).stream()
+                    .mapToLong(Long::longValue)
+                    .sum();
+            BloomFilter rebuilt = new BloomFilter(Math.max(minCapacity, count * 2), falsePositiveRate);
+
+            // isbns added while scanning go to both filters, so none is lost on swap
+            pendingFilter = rebuilt;
+            shardRouter.scatterGather(bookRepository::findAllIsbns).forEach(rebuilt::add);
+
+            insertions.set(count);
+            filter = rebuilt;
+            log.info("Rebuilt isbn filter for {} books", count);
+        } finally {
+            pendingFilter = null;
+            rebuilding.set(false);
+        }
+    }
+}
@@ -3,21 +3,50 @@ package com.filiaiev.polytech.service.impl;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.BeanUtil;
+import com.filiaiev.polytech.datasource.ShardRouter;
+import com.filiaiev.polytech.datasource.ShardScope;
 import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+import com.filiaiev.polytech.dto.BookPatchDTO;
+import com.filiaiev.polytech.dto.BulkUpdateResultDTO;
 import com.filiaiev.polytech.dto.UpdateBookDTO;
 import com.filiaiev.polytech.exception.BookNotFoundException;
 import com.filiaiev.polytech.mapper.BookMapper;
 import com.filiaiev.polytech.model.Book;
 import com.filiaiev.polytech.repository.BookRepository;
+import com.filiaiev.polytech.service.BookHistoryService;
+import com.filiaiev.polytech.service.BookIsbnFilter;
 import com.filiaiev.polytech.service.BookService;
+import com.filiaiev.polytech.service.BookSuggestionIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.beans.PropertyDescriptor;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,63 +54,257 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class BookServiceImpl implements BookService {
 
+    private static final Set<String> SUGGESTED_FIELDS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("title", "authorName", "quantity")));
+    private static final Set<String> HISTORY_FIELDS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("basePrice", "quantity")));
+
     private final BookRepository bookRepository;
     private final ObjectMapper objectMapper;
+    private final BookIsbnFilter bookIsbnFilter;
+    private final ShardRouter shardRouter;
+    private final BookSuggestionIndex bookSuggestionIndex;
+    private final BookHistoryService bookHistoryService;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
+    @Transactional(readOnly = true)
     public List<BookDTO> getAllBooks() {
-        return bookRepository.findAll().stream()
+        return shardRouter.scatterGather(() -> bookRepository.findAll(Sort.by("isbn")),
+                        Comparator.comparing(Book::getIsbn)).stream()
                 .map(BookMapper.INSTANCE::bookToBookDTO)
                 .collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public BookDTO getBook(String isbn) {
-        Book book = bookRepository.findById(isbn)
-                .orElseThrow(BookNotFoundException::new);
-        return BookMapper.INSTANCE.bookToBookDTO(book);
+        try (ShardScope ignored = shardRouter.route(isbn)) {
+            Book book = bookRepository.findById(isbn)
+                    .orElseThrow(BookNotFoundException::new);
+            return BookMapper.INSTANCE.bookToBookDTO(book);
+        }
     }
 
     @Override
     public BookDTO createBook(BookDTO book) {
-        Book createdBook = bookRepository.saveAndFlush(
-                BookMapper.INSTANCE.bookDTOtoBook(book));
-        return BookMapper.INSTANCE.bookToBookDTO(createdBook);
+        return saveBook(BookMapper.INSTANCE.bookDTOtoBook(book));
     }
 
+    /**
+     * A filter miss is only a hint: books created by other instances or outside
+     * the service never reach this instance's filter. So a book the filter rules
+     * out is inserted straight away, and if its isbn turns out to be taken it is
+     * replaced like any existing book. Each attempt gets its own transaction, as
+     * a failed insert leaves its transaction unusable.
+     */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BookDTO updateOrCreateBook(String isbn, UpdateBookDTO bookDTO) {
-        Optional<Book> book = bookRepository.findById(isbn);
+        try (ShardScope ignored = shardRouter.route(isbn)) {
+            if(!bookIsbnFilter.mightContain(isbn)) {
+                try {
+                    return transactionTemplate.execute(status -> saveBook(newBook(isbn, bookDTO)));
+                } catch (DataIntegrityViolationException ex) {
+                    bookIsbnFilter.add(isbn);
+                }
+            }
+            return transactionTemplate.execute(status -> replaceOrCreateBook(isbn, bookDTO));
+        }
+    }
+
+    @SneakyThrows
+    @Override
+    public BookDTO updateBook(String isbn, UpdateBookDTO bookDTO) {
+        try (ShardScope ignored = shardRouter.route(isbn)) {
+            Book toUpdate = bookRepository.findById(isbn)
+                    .orElseThrow(BookNotFoundException::new);
+
+            toUpdate = objectMapper.updateValue(toUpdate, bookDTO);
+
+            BookDTO updatedBookDTO = BookMapper.INSTANCE.bookToBookDTO(toUpdate);
+            afterCommit(() -> onUpdated(updatedBookDTO));
+            return updatedBookDTO;
+        }
+    }
+
+    /**
+     * Patches are grouped by shard and by the set of fields they carry, so every group is
+     * written with one batched statement instead of a load and dirty check per
+     * book. Patches repeating an isbn are merged in input order first, so the last
+     * value given for a field wins and every row of that isbn gets the same status.
+     * Chunks commit independently, hence no surrounding transaction.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BulkUpdateResultDTO> updateBooks(List<BookPatchDTO> patches) {
+        Map<String, List<Integer>> rowsByIsbn = new LinkedHashMap<>();
+        Map<String, UpdateBookDTO> patchByIsbn = new LinkedHashMap<>();
 
+        for (int row = 0; row < patches.size(); row++) {
+            BookPatchDTO patch = patches.get(row);
+            rowsByIsbn.computeIfAbsent(patch.getIsbn(), key -> new ArrayList<>()).add(row);
+            patchByIsbn.merge(patch.getIsbn(), patch.getBook(), BookServiceImpl::mergePatches);
+        }
+
+        Map<String, BulkUpdateResultDTO.Status> statusByIsbn = new HashMap<>();
+        Map<Integer, Map<Set<String>, List<String>>> isbnsByShardAndFields = new LinkedHashMap<>();
+
+        patchByIsbn.forEach((isbn, patch) -> {
+            Set<String> fields = presentFields(patch);
+            if (fields.isEmpty()) {
+                statusByIsbn.put(isbn, BulkUpdateResultDTO.Status.SKIPPED);
+                return;
+            }
+            isbnsByShardAndFields
+                    .computeIfAbsent(shardRouter.shardOf(isbn), key -> new LinkedHashMap<>())
+                    .computeIfAbsent(fields, key -> new ArrayList<>())
+                    .add(isbn);
+        });
+
+        isbnsByShardAndFields.forEach((shard, isbnsByFields) -> isbnsByFields.forEach((fields, isbns) -> {
+            List<Book> books = isbns.stream()
+                    .map(isbn -> toPartialBook(isbn, patchByIsbn.get(isbn)))
+                    .collect(Collectors.toList());
+
+            try (ShardScope ignored = shardRouter.route(shard)) {
+                int[] counts = bookRepository.updateAll(fields, books);
+                List<String> updatedIsbns = new ArrayList<>();
+
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        statusByIsbn.put(isbns.get(i), BulkUpdateResultDTO.Status.FAILED);
+                        continue;
+                    }
+                    if (counts[i] == 0) {
+                        statusByIsbn.put(isbns.get(i), BulkUpdateResultDTO.Status.NOT_FOUND);
+                        continue;
+                    }
+                    statusByIsbn.put(isbns.get(i), BulkUpdateResultDTO.Status.UPDATED);
+                    updatedIsbns.add(isbns.get(i));
+                }
+
+                // chunks are committed by now; the patches carry every value that changed
+                boolean suggestionsChanged = !Collections.disjoint(fields, SUGGESTED_FIELDS);
+                boolean historyChanged = !Collections.disjoint(fields, HISTORY_FIELDS);
+                for (String isbn : updatedIsbns) {
+                    UpdateBookDTO patch = patchByIsbn.get(isbn);
+                    if (suggestionsChanged) {
+                        bookSuggestionIndex.reindex(isbn, patch);
+                    }
+                    if (historyChanged) {
+                        bookHistoryService.record(isbn, patch.getBasePrice(), patch.getQuantity());
+                    }
+                }
+            }
+        }));
+
+        return patches.stream()
+                .map(patch -> new BulkUpdateResultDTO(patch.getIsbn(), statusByIsbn.get(patch.getIsbn())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void deleteBook(String isbn) {
+        try (ShardScope ignored = shardRouter.route(isbn)) {
+            if(bookRepository.deleteByIsbn(isbn) == 0) {
+                throw new BookNotFoundException();
+            }
+        }
+        afterCommit(() -> bookSuggestionIndex.remove(isbn));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<String> suggest(String prefix, int limit) {
+        return bookSuggestionIndex.suggest(prefix, limit);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BookHistoryPointDTO> getBookHistory(String isbn, Instant from, Instant to) {
+        return bookHistoryService.getHistory(isbn, from, to);
+    }
+
+    private BookDTO replaceOrCreateBook(String isbn, UpdateBookDTO bookDTO) {
+        Optional<Book> book = bookRepository.findById(isbn);
         if(!book.isPresent()) {
-            BookDTO newBook = BookMapper.INSTANCE.updateBookDTOtoBookDTO(bookDTO);
-            newBook.setIsbn(isbn);
-            return createBook(newBook);
+            return saveBook(newBook(isbn, bookDTO));
         }
 
         Book toUpdate = book.get();
         BeanUtils.copyProperties(bookDTO, toUpdate);
 
-        return BookMapper.INSTANCE.bookToBookDTO(toUpdate);
+        BookDTO updatedBookDTO = BookMapper.INSTANCE.bookToBookDTO(toUpdate);
+        afterCommit(() -> onUpdated(updatedBookDTO));
+        return updatedBookDTO;
     }
 
-    @SneakyThrows
-    @Override
-    public BookDTO updateBook(String isbn, UpdateBookDTO bookDTO) {
-        Book toUpdate = bookRepository.findById(isbn)
-                .orElseThrow(BookNotFoundException::new);
+    private BookDTO saveBook(Book book) {
+        try (ShardScope ignored = shardRouter.route(book.getIsbn())) {
+            Book createdBook = bookRepository.saveAndFlush(book);
+            BookDTO createdBookDTO = BookMapper.INSTANCE.bookToBookDTO(createdBook);
 
-        toUpdate = objectMapper.updateValue(toUpdate, bookDTO);
+            afterCommit(() -> {
+                bookIsbnFilter.add(createdBook.getIsbn());
+                bookSuggestionIndex.index(createdBookDTO);
+                bookHistoryService.record(createdBookDTO);
+            });
+            return createdBookDTO;
+        }
+    }
 
-        return BookMapper.INSTANCE.bookToBookDTO(toUpdate);
+    private void onUpdated(BookDTO book) {
+        bookSuggestionIndex.index(book);
+        bookHistoryService.record(book);
     }
 
-    @Override
-    public void deleteBook(String isbn) {
-        if(bookRepository.existsById(isbn)) {
-            bookRepository.deleteById(isbn);
+    private static void afterCommit(Runnable action) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
             return;
         }
-        throw new BookNotFoundException();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Book newBook(String isbn, UpdateBookDTO bookDTO) {
+        Book book = BookMapper.INSTANCE.updateBookDTOtoBook(bookDTO);
+        book.setIsbn(isbn);
+        return book.markNew();
+    }
+
+    private static Book toPartialBook(String isbn, UpdateBookDTO patch) {
+        Book book = BookMapper.INSTANCE.updateBookDTOtoBook(patch);
+        book.setIsbn(isbn);
+        return book;
+    }
+
+    private static UpdateBookDTO mergePatches(UpdateBookDTO earlier, UpdateBookDTO later) {
+        UpdateBookDTO merged = new UpdateBookDTO();
+        BeanUtils.copyProperties(earlier, merged);
+
+        BeanWrapper source = new BeanWrapperImpl(later);
+        BeanWrapper target = new BeanWrapperImpl(merged);
+        for (String field : presentFields(later)) {
+            target.setPropertyValue(field, source.getPropertyValue(field));
+        }
+        return merged;
+    }
+
+    private static Set<String> presentFields(UpdateBookDTO bookDTO) {
+        BeanWrapper wrapper = new BeanWrapperImpl(bookDTO);
+        Set<String> fields = new TreeSet<>();
+
+        for (PropertyDescriptor property : wrapper.getPropertyDescriptors()) {
+            if (property.getWriteMethod() != null && wrapper.getPropertyValue(property.getName()) != null) {
+                fields.add(property.getName());
+            }
+        }
+        return fields;
     }
 }
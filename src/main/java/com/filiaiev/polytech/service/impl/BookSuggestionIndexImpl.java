@@ -0,0 +1,287 @@
+package com.filiaiev.polytech.service.impl;
+
+import com.filiaiev.polytech.datasource.ReplicationContext;
+import com.filiaiev.polytech.datasource.ShardRouter;
+import com.filiaiev.polytech.datasource.ShardScope;
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.UpdateBookDTO;
+import com.filiaiev.polytech.repository.BookRepository;
+import com.filiaiev.polytech.repository.BookSuggestionView;
+import com.filiaiev.polytech.service.BookSuggestionIndex;
+import com.filiaiev.polytech.util.SuggestionTrie;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Suggests titles and author names ranked by the total stock of the books
+ * carrying them. Every indexed book is remembered with what it contributed,
+ * so re-indexing or removing it only needs the isbn and the new state.
+ * Mutations only see this instance's writes, so the index is also rebuilt
+ * every resync interval to pick up books changed by other instances or
+ * outside the service. Suggestions read the trie optimistically and only
+ * take the lock when a mutation raced them, so keystrokes do not contend
+ * with each other.
+ */
+@Slf4j
+@Service
+public class BookSuggestionIndexImpl implements BookSuggestionIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final BookRepository bookRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int topK;
+    private final Duration resyncInterval;
+    private final ScheduledExecutorService resyncExecutor;
+
+    private final StampedLock lock = new StampedLock();
+    private Index index;
+    private List<Consumer<Index>> pendingMutations;
+
+    public BookSuggestionIndexImpl(BookRepository bookRepository, ShardRouter shardRouter,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${bookstore.suggest.top-k:10}") int topK,
+                                   @Value("${bookstore.suggest.resync-interval:5m}") Duration resyncInterval) {
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.topK = topK;
+        this.resyncInterval = resyncInterval;
+        this.index = new Index(topK);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("suggestion-index-resync-");
+        threadFactory.setDaemon(true);
+        this.resyncExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * Builds the index once the application is ready and resyncs it from then
+     * on, unless the resync interval is zero.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+        if (!resyncInterval.isZero() && !resyncInterval.isNegative()) {
+            resyncExecutor.scheduleWithFixedDelay(this::resync,
+                    resyncInterval.toMillis(), resyncInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        resyncExecutor.shutdownNow();
+    }
+
+    @Override
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int max = Math.min(limit, topK);
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                List<String> suggestions = index.trie.suggest(key, max);
+                if (lock.validate(stamp)) {
+                    return suggestions;
+                }
+            } catch (RuntimeException ex) {
+                // walked into a node half way through a mutation, the stamp is invalid then
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return index.trie.suggest(key, max);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void index(BookDTO book) {
+        mutate(current -> current.index(book.getIsbn(), book.getTitle(), book.getAuthorName(), book.getQuantity()));
+    }
+
+    @Override
+    public void reindex(String isbn, UpdateBookDTO patch) {
+        mutate(current -> current.reindex(isbn, patch.getTitle(), patch.getAuthorName(), patch.getQuantity()));
+    }
+
+    @Override
+    public void remove(String isbn) {
+        mutate(current -> current.unindex(isbn));
+    }
+
+    /**
+     * Scans the books shard by shard into a new index without blocking
+     * suggestions. Mutations arriving meanwhile are applied to the current
+     * index and replayed on the new one before it replaces the current one,
+     * so none of them is overwritten by the scan.
+     */
+    @Override
+    public synchronized void rebuild() {
+        Index rebuilt = new Index(topK);
+        long stamp = lock.writeLock();
+        try {
+            pendingMutations = new ArrayList<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        boolean scanned = false;
+        // a replica lagging behind would miss mutations that are not replayed anymore
+        try (ReplicationContext.Scope primary = ReplicationContext.onPrimary()) {
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                try (ShardScope ignored = shardRouter.route(shard)) {
+                    readOnlyTransaction.executeWithoutResult(status -> {
+                        try (Stream<BookSuggestionView> books = bookRepository.streamSuggestionViews()) {
+                            books.forEach(book -> rebuilt.index(
+                                    book.getIsbn(), book.getTitle(), book.getAuthorName(), book.getQuantity()));
+                        }
+                    });
+                }
+            }
+            scanned = true;
+        } finally {
+            stamp = lock.writeLock();
+            try {
+                if (scanned) {
+                    pendingMutations.forEach(mutation -> mutation.accept(rebuilt));
+                    index = rebuilt;
+                }
+                pendingMutations = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        log.info("Rebuilt suggestion index for {} books", rebuilt.contributions.size());
+    }
+
+    private void resync() {
+        try {
+            rebuild();
+        } catch (RuntimeException ex) {
+            log.error("Suggestion index resync failed, keeping the current index", ex);
+        }
+    }
+
+    private void mutate(Consumer<Index> mutation) {
+        long stamp = lock.writeLock();
+        try {
+            mutation.accept(index);
+            if (pendingMutations != null) {
+                pendingMutations.add(mutation);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(stripped.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    private static final class Index {
+
+        private final SuggestionTrie trie;
+        private final Map<String, Contribution> contributions = new HashMap<>();
+
+        private Index(int topK) {
+            this.trie = new SuggestionTrie(topK);
+        }
+
+        private void index(String isbn, String title, String authorName, long quantity) {
+            unindex(isbn);
+
+            Contribution contribution = new Contribution(normalize(title), normalize(authorName), quantity);
+            contributions.put(isbn, contribution);
+            add(contribution.titleKey, title, contribution.score);
+            add(contribution.authorKey, authorName, contribution.score);
+        }
+
+        private void reindex(String isbn, String title, String authorName, Integer quantity) {
+            Contribution previous = contributions.get(isbn);
+            if (previous == null) {
+                if (title != null && authorName != null && quantity != null) {
+                    index(isbn, title, authorName, quantity);
+                }
+                return;
+            }
+
+            Contribution updated = new Contribution(
+                    title == null ? previous.titleKey : normalize(title),
+                    authorName == null ? previous.authorKey : normalize(authorName),
+                    quantity == null ? previous.score : quantity);
+            contributions.put(isbn, updated);
+
+            // adding before removing keeps terms alive, so unchanged keys keep their text
+            add(updated.titleKey, title, updated.score);
+            add(updated.authorKey, authorName, updated.score);
+            removeKey(previous.titleKey, previous.score);
+            removeKey(previous.authorKey, previous.score);
+        }
+
+        private void unindex(String isbn) {
+            Contribution previous = contributions.remove(isbn);
+            if (previous != null) {
+                removeKey(previous.titleKey, previous.score);
+                removeKey(previous.authorKey, previous.score);
+            }
+        }
+
+        private void add(String key, String text, long score) {
+            if (!key.isEmpty()) {
+                trie.add(key, text, score);
+            }
+        }
+
+        private void removeKey(String key, long score) {
+            if (!key.isEmpty()) {
+                trie.remove(key, score);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Contribution {
+
+        private final String titleKey;
+        private final String authorKey;
+        private final long score;
+    }
+}
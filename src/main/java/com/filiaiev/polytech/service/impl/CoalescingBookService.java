@@ -0,0 +1,127 @@
+package com.filiaiev.polytech.service.impl;
+
+import com.filiaiev.polytech.datasource.ReplicationRoutingDataSource;
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+import com.filiaiev.polytech.dto.BookPatchDTO;
+import com.filiaiev.polytech.dto.BulkUpdateResultDTO;
+import com.filiaiev.polytech.dto.UpdateBookDTO;
+import com.filiaiev.polytech.service.BookService;
+import com.filiaiev.polytech.util.SingleFlight;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lets concurrent identical reads share one load. It sits in front of the
+ * transactional {@link BookServiceImpl}, so waiting callers hold neither a
+ * transaction nor a pooled connection. Once a write committed, loads of the
+ * books it touched that are still in flight may have read the old state, so
+ * they are detached and later reads start over. Callers whose reads go to
+ * the primary, as they wrote recently, load on their own instead of joining a
+ * load that reads from the replica. Callers of one flight receive the same
+ * instances and must not modify them.
+ */
+@Primary
+@Service
+public class CoalescingBookService implements BookService {
+
+    private static final String ALL_BOOKS = "all";
+
+    private final BookService bookService;
+    private final ReplicationRoutingDataSource replicationRoutingDataSource;
+    private final SingleFlight<String, BookDTO> bookLoads = new SingleFlight<>();
+    private final SingleFlight<String, List<BookDTO>> listLoads = new SingleFlight<>();
+
+    public CoalescingBookService(@Qualifier("bookServiceImpl") BookService bookService,
+                                 Optional<ReplicationRoutingDataSource> replicationRoutingDataSource) {
+        this.bookService = bookService;
+        this.replicationRoutingDataSource = replicationRoutingDataSource.orElse(null);
+    }
+
+    @Override
+    public List<BookDTO> getAllBooks() {
+        if (readsFromPrimary()) {
+            return bookService.getAllBooks();
+        }
+        return listLoads.execute(ALL_BOOKS, bookService::getAllBooks);
+    }
+
+    @Override
+    public BookDTO getBook(String isbn) {
+        if (readsFromPrimary()) {
+            return bookService.getBook(isbn);
+        }
+        return bookLoads.execute(isbn, () -> bookService.getBook(isbn));
+    }
+
+    @Override
+    public BookDTO createBook(BookDTO book) {
+        try {
+            return bookService.createBook(book);
+        } finally {
+            forget(book.getIsbn());
+        }
+    }
+
+    @Override
+    public BookDTO updateOrCreateBook(String isbn, UpdateBookDTO bookDTO) {
+        try {
+            return bookService.updateOrCreateBook(isbn, bookDTO);
+        } finally {
+            forget(isbn);
+        }
+    }
+
+    @Override
+    public BookDTO updateBook(String isbn, UpdateBookDTO bookDTO) {
+        try {
+            return bookService.updateBook(isbn, bookDTO);
+        } finally {
+            forget(isbn);
+        }
+    }
+
+    @Override
+    public List<BulkUpdateResultDTO> updateBooks(List<BookPatchDTO> patches) {
+        try {
+            return bookService.updateBooks(patches);
+        } finally {
+            // chunks commit one by one, so even a failed call may have changed some books
+            patches.forEach(patch -> bookLoads.forget(patch.getIsbn()));
+            listLoads.forget(ALL_BOOKS);
+        }
+    }
+
+    @Override
+    public void deleteBook(String isbn) {
+        try {
+            bookService.deleteBook(isbn);
+        } finally {
+            forget(isbn);
+        }
+    }
+
+    @Override
+    public List<String> suggest(String prefix, int limit) {
+        return bookService.suggest(prefix, limit);
+    }
+
+    @Override
+    public List<BookHistoryPointDTO> getBookHistory(String isbn, Instant from, Instant to) {
+        return bookService.getBookHistory(isbn, from, to);
+    }
+
+    private boolean readsFromPrimary() {
+        return replicationRoutingDataSource != null && replicationRoutingDataSource.readsFromPrimary();
+    }
+
+    private void forget(String isbn) {
+        bookLoads.forget(isbn);
+        listLoads.forget(ALL_BOOKS);
+    }
+}
@@ -0,0 +1,273 @@
+package com.filiaiev.polytech.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only time series of fixed-width points, a timestamp plus a few long
+ * values. Points are stored column by column in chunks, with every column
+ * holding the zigzag varint encoded deltas to the previous point of the same
+ * chunk, so slowly changing values take a byte or two per point. Only the
+ * open chunk is kept decoded; full chunks are sealed into self-describing
+ * payloads that the owner is expected to store elsewhere and drop with
+ * {@link #dropSealed}. Not thread-safe.
+ */
+public class DeltaEncodedSeries {
+
+    private final int valueCount;
+    private final int pointsPerChunk;
+    private final List<EncodedChunk> sealed = new ArrayList<>();
+    private Chunk open;
+    private long[] last;
+
+    public DeltaEncodedSeries(int valueCount, int pointsPerChunk) {
+        this.valueCount = valueCount;
+        this.pointsPerChunk = pointsPerChunk;
+    }
+
+    @FunctionalInterface
+    public interface PointConsumer {
+
+        void accept(long timestamp, long[] values);
+    }
+
+    /**
+     * Appends the point unless its values equal those of the last appended
+     * point. A full open chunk is sealed first.
+     *
+     * @return whether the point was appended
+     */
+    public boolean appendIfChanged(long timestamp, long... values) {
+        if (values.length != valueCount) {
+            throw new IllegalArgumentException("Expected " + valueCount + " values but got " + values.length);
+        }
+        if (last != null && Arrays.equals(Arrays.copyOfRange(last, 1, last.length), values)) {
+            return false;
+        }
+
+        long[] previous = last;
+        if (open == null || open.count == pointsPerChunk) {
+            if (open != null) {
+                sealed.add(open.encode());
+            }
+            open = new Chunk(valueCount + 1);
+            previous = new long[valueCount + 1];
+        }
+
+        long[] point = new long[valueCount + 1];
+        point[0] = timestamp;
+        System.arraycopy(values, 0, point, 1, valueCount);
+        open.append(point, previous);
+        last = point;
+        return true;
+    }
+
+    /**
+     * @return values of the last appended point, or {@code null} if there is none
+     */
+    public long[] lastValues() {
+        return last == null ? null : Arrays.copyOfRange(last, 1, last.length);
+    }
+
+    /**
+     * @return chunks sealed and not dropped yet, oldest first
+     */
+    public List<EncodedChunk> sealedChunks() {
+        return Collections.unmodifiableList(sealed);
+    }
+
+    /**
+     * Forgets the oldest sealed chunks, once they are stored elsewhere.
+     */
+    public void dropSealed(int count) {
+        sealed.subList(0, count).clear();
+    }
+
+    /**
+     * @return the open chunk encoded as it is now, or {@code null} if nothing was appended
+     */
+    public EncodedChunk encodeOpen() {
+        return open == null ? null : open.encode();
+    }
+
+    /**
+     * Seals the open chunk even if it is not full, so the next point starts a
+     * new one. Change detection still compares with the last point.
+     */
+    public void sealOpen() {
+        if (open != null) {
+            sealed.add(open.encode());
+            open = null;
+        }
+    }
+
+    /**
+     * Passes every point held in memory with {@code from <= timestamp < to} to
+     * the consumer, in append order.
+     */
+    public void forEachBetween(long from, long to, PointConsumer consumer) {
+        List<EncodedChunk> chunks = new ArrayList<>(sealed);
+        if (open != null) {
+            chunks.add(open.encode());
+        }
+
+        for (EncodedChunk chunk : chunks) {
+            if (chunk.maxTimestamp >= from && chunk.minTimestamp < to) {
+                decode(chunk.payload, (timestamp, values) -> {
+                    if (timestamp >= from && timestamp < to) {
+                        consumer.accept(timestamp, values);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Passes every point of an encoded chunk to the consumer, in append order.
+     * The values array is reused between calls.
+     */
+    public static void decode(byte[] payload, PointConsumer consumer) {
+        int[] offset = {0};
+        int columnCount = (int) readVarLong(payload, offset);
+        int count = (int) readVarLong(payload, offset);
+
+        int[] lengths = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            lengths[column] = (int) readVarLong(payload, offset);
+        }
+        int[] offsets = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            offsets[column] = offset[0];
+            offset[0] += lengths[column];
+        }
+
+        long[] point = new long[columnCount];
+        long[] values = new long[columnCount - 1];
+        int[] position = new int[1];
+        for (int i = 0; i < count; i++) {
+            for (int column = 0; column < columnCount; column++) {
+                position[0] = offsets[column];
+                point[column] += unzigzag(readVarLong(payload, position));
+                offsets[column] = position[0];
+            }
+            System.arraycopy(point, 1, values, 0, values.length);
+            consumer.accept(point[0], values);
+        }
+    }
+
+    /**
+     * A sealed or snapshotted chunk: its timestamp range, point count and
+     * payload, which {@link #decode} reads back.
+     */
+    public static final class EncodedChunk {
+
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final int pointCount;
+        private final byte[] payload;
+
+        private EncodedChunk(long minTimestamp, long maxTimestamp, int pointCount, byte[] payload) {
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.pointCount = pointCount;
+            this.payload = payload;
+        }
+
+        public long getMinTimestamp() {
+            return minTimestamp;
+        }
+
+        public long getMaxTimestamp() {
+            return maxTimestamp;
+        }
+
+        public int getPointCount() {
+            return pointCount;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private static final class Chunk {
+
+        private final byte[][] columns;
+        private final int[] lengths;
+        private int count;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        private Chunk(int columnCount) {
+            this.columns = new byte[columnCount][16];
+            this.lengths = new int[columnCount];
+        }
+
+        private void append(long[] point, long[] previous) {
+            for (int column = 0; column < columns.length; column++) {
+                writeVarLong(column, zigzag(point[column] - previous[column]));
+            }
+            count++;
+            minTimestamp = Math.min(minTimestamp, point[0]);
+            maxTimestamp = Math.max(maxTimestamp, point[0]);
+        }
+
+        // header of column count, point count and column lengths, followed by the columns
+        private EncodedChunk encode() {
+            byte[] header = new byte[10 * (columns.length + 2)];
+            int headerLength = putVarLong(header, 0, columns.length);
+            headerLength = putVarLong(header, headerLength, count);
+            int size = 0;
+            for (int column = 0; column < columns.length; column++) {
+                headerLength = putVarLong(header, headerLength, lengths[column]);
+                size += lengths[column];
+            }
+
+            byte[] payload = Arrays.copyOf(header, headerLength + size);
+            int offset = headerLength;
+            for (int column = 0; column < columns.length; column++) {
+                System.arraycopy(columns[column], 0, payload, offset, lengths[column]);
+                offset += lengths[column];
+            }
+            return new EncodedChunk(minTimestamp, maxTimestamp, count, payload);
+        }
+
+        private void writeVarLong(int column, long value) {
+            if (lengths[column] + 10 > columns[column].length) {
+                columns[column] = Arrays.copyOf(columns[column], columns[column].length * 2);
+            }
+            lengths[column] = putVarLong(columns[column], lengths[column], value);
+        }
+    }
+
+    private static int putVarLong(byte[] bytes, int offset, long value) {
+        while ((value & ~0x7fL) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] offset) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[offset[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
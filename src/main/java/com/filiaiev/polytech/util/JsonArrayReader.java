@@ -0,0 +1,66 @@
+package com.filiaiev.polytech.util;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the elements of one array field of a top-level JSON object a few at
+ * a time, so a large document never has to be held in memory as a whole.
+ * Other fields before the array are skipped; anything after it is not read.
+ */
+public class JsonArrayReader<T> implements Closeable {
+
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private boolean exhausted = true;
+
+    public JsonArrayReader(ObjectMapper objectMapper, InputStream in, String field, Class<T> type)
+            throws IOException {
+        this.parser = objectMapper.getFactory().createParser(in);
+        this.reader = objectMapper.readerFor(type);
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && name.equals(field)) {
+                exhausted = false;
+                return;
+            }
+            parser.skipChildren();
+        }
+    }
+
+    /**
+     * @return up to {@code max} next elements, empty once the array is exhausted
+     */
+    public List<T> next(int max) throws IOException {
+        List<T> elements = new ArrayList<>();
+        while (!exhausted && elements.size() < max) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                exhausted = true;
+            } else if (token == null) {
+                throw new JsonParseException(parser, "Unexpected end of the array");
+            } else {
+                elements.add(reader.readValue(parser));
+            }
+        }
+        return elements;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
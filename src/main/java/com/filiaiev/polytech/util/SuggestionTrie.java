@@ -0,0 +1,237 @@
+package com.filiaiev.polytech.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Radix tree over normalized keys where every node keeps the top-K terms of
+ * its subtree, so a prefix lookup is a walk down the tree without visiting
+ * the subtree. Adding or removing a term only recomputes the top-K lists on
+ * its path. A term may be added several times; its score is the sum of its
+ * contributions and it disappears once every contribution is removed.
+ * Not thread-safe.
+ */
+public class SuggestionTrie {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Term[] NO_TERMS = new Term[0];
+    private static final Comparator<Term> RANKING = Comparator.comparingLong((Term t) -> t.score).reversed()
+            .thenComparing(t -> t.key);
+
+    private final int topK;
+    private final Node root = new Node("");
+
+    public SuggestionTrie(int topK) {
+        this.topK = topK;
+    }
+
+    /**
+     * Adds a contribution to the term. A {@code null} text keeps the text the
+     * term already shows, so it is only valid for a term that exists.
+     */
+    public void add(String key, String text, long score) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+
+        while (i < key.length()) {
+            int index = childIndex(node, key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i));
+                insertChild(node, -index - 1, leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children = new Node[]{child};
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+
+        if (node.term == null) {
+            node.term = new Term(key);
+        }
+        if (text != null) {
+            node.term.text = text;
+        }
+        node.term.score += score;
+        node.term.contributions++;
+
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            recomputeTop(path.get(depth));
+        }
+    }
+
+    public void remove(String key, long score) {
+        List<Node> path = find(key);
+        if (path == null) {
+            return;
+        }
+
+        Node node = path.get(path.size() - 1);
+        node.term.score -= score;
+        if (--node.term.contributions == 0) {
+            node.term = null;
+        }
+
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node current = path.get(depth);
+            if (depth > 0 && current.term == null && current.children.length == 0) {
+                removeChild(path.get(depth - 1), current);
+                continue;
+            }
+            if (depth > 0 && current.term == null && current.children.length == 1) {
+                Node only = current.children[0];
+                current.label = current.label + only.label;
+                current.term = only.term;
+                current.children = only.children;
+            }
+            recomputeTop(current);
+        }
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Node node = root;
+        int i = 0;
+
+        while (i < prefix.length()) {
+            int index = childIndex(node, prefix.charAt(i));
+            if (index < 0) {
+                return Collections.emptyList();
+            }
+
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, prefix, i);
+            if (i + common < prefix.length() && common < child.label.length()) {
+                return Collections.emptyList();
+            }
+            node = child;
+            i += common;
+        }
+
+        Term[] top = node.top;
+        List<String> suggestions = new ArrayList<>(Math.min(limit, top.length));
+        for (int j = 0; j < top.length && j < limit; j++) {
+            suggestions.add(top[j].text);
+        }
+        return suggestions;
+    }
+
+    private List<Node> find(String key) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        int i = 0;
+
+        while (i < key.length()) {
+            int index = childIndex(node, key.charAt(i));
+            if (index < 0 || !key.startsWith(node.children[index].label, i)) {
+                return null;
+            }
+            node = node.children[index];
+            path.add(node);
+            i += node.label.length();
+        }
+        return node.term == null ? null : path;
+    }
+
+    private void recomputeTop(Node node) {
+        List<Term> candidates = new ArrayList<>();
+        if (node.term != null) {
+            candidates.add(node.term);
+        }
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        candidates.sort(RANKING);
+
+        node.top = candidates.isEmpty()
+                ? NO_TERMS
+                : candidates.subList(0, Math.min(topK, candidates.size())).toArray(NO_TERMS);
+    }
+
+    private static int childIndex(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char current = node.children[middle].label.charAt(0);
+            if (current < first) {
+                low = middle + 1;
+            } else if (current > first) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    private static void insertChild(Node parent, int index, Node child) {
+        Node[] children = new Node[parent.children.length + 1];
+        System.arraycopy(parent.children, 0, children, 0, index);
+        children[index] = child;
+        System.arraycopy(parent.children, index, children, index + 1, parent.children.length - index);
+        parent.children = children;
+    }
+
+    private static void removeChild(Node parent, Node child) {
+        int index = childIndex(parent, child.label.charAt(0));
+        Node[] children = new Node[parent.children.length - 1];
+        System.arraycopy(parent.children, 0, children, 0, index);
+        System.arraycopy(parent.children, index + 1, children, index, children.length - index);
+        parent.children = children;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private Term term;
+        private Term[] top = NO_TERMS;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class Term {
+
+        private final String key;
+        private String text;
+        private long score;
+        private int contributions;
+
+        private Term(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS book(
+    isbn         VARCHAR(255)   NOT NULL PRIMARY KEY,
+    title        VARCHAR(255)   NOT NULL,
+    genre_name   VARCHAR(255)   NOT NULL,
+    pages        INTEGER        NOT NULL,
+    base_price   NUMERIC(10, 2) NOT NULL,
+    quantity     INTEGER        NOT NULL,
+    publish_date DATE           NOT NULL,
+    author_name  VARCHAR(255)   NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS book_history(
+    id      BIGINT       GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    isbn    VARCHAR(255) NOT NULL,
+    min_ts  BIGINT       NOT NULL,
+    max_ts  BIGINT       NOT NULL,
+    payload BLOB         NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS book_history_isbn_max_ts ON book_history(isbn, max_ts);
@@ -3,6 +3,9 @@ package com.filiaiev.polytech.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.filiaiev.polytech.controller.BookController;
 import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+import com.filiaiev.polytech.dto.BookPatchDTO;
+import com.filiaiev.polytech.dto.BulkUpdateResultDTO;
 import com.filiaiev.polytech.dto.UpdateBookDTO;
 import com.filiaiev.polytech.exception.BookNotFoundException;
 import com.filiaiev.polytech.mapper.BookMapper;
@@ -16,13 +19,20 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -30,7 +40,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest(BookController.class)
+@WebMvcTest(value = BookController.class, properties = "bookstore.bulk-update.chunk-size=2")
 public class BookControllerTest {
 
     @Autowired
@@ -99,12 +109,59 @@ public class BookControllerTest {
     @Test
     public void getBookWithGivenIsbn_Should_ReturnNotFound_When_BookIsNotFound() throws Exception {
         when(bookService.getBook(anyString()))
-                .thenThrow(BookNotFoundException.class);
+                .thenThrow(new BookNotFoundException());
 
         mvc.perform(
                 get("/api/v1/books/{isbn}", "notfound"))
                 .andDo(print())
-                .andExpect(status().isNotFound());
+                .andExpect(status().isNotFound())
+                .andExpect(status().reason("Book with the given isbn does not exists!"));
+    }
+
+    @Test
+    public void suggest_Should_ReturnSuggestionsForPrefix() throws Exception {
+        when(bookService.suggest("har", 5))
+                .thenReturn(Collections.singletonList("Harry Potter and the Order of the Phoenix"));
+
+        mvc.perform(
+                get("/api/v1/books/suggest")
+                .param("prefix", "har")
+                .param("limit", "5"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]", equalTo("Harry Potter and the Order of the Phoenix")));
+    }
+
+    @Test
+    public void suggest_Should_ReturnBadRequest_When_LimitIsNotPositive() throws Exception {
+        mvc.perform(
+                get("/api/v1/books/suggest")
+                .param("prefix", "har")
+                .param("limit", "-1"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verify(bookService, never()).suggest(anyString(), anyInt());
+    }
+
+    @Test
+    public void getBookHistory_Should_ReturnPointsWithinRange() throws Exception {
+        String isbn = "9780340960196";
+        Instant from = Instant.parse("2022-01-01T00:00:00Z");
+        Instant to = Instant.parse("2022-02-01T00:00:00Z");
+
+        when(bookService.getBookHistory(isbn, from, to))
+                .thenReturn(Collections.singletonList(new BookHistoryPointDTO(
+                        Instant.parse("2022-01-15T10:00:00Z"), BigDecimal.valueOf(23.25), 12)));
+
+        mvc.perform(
+                get("/api/v1/books/{isbn}/history", isbn)
+                .param("from", from.toString())
+                .param("to", to.toString()))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].timestamp", equalTo("2022-01-15T10:00:00Z")))
+                .andExpect(jsonPath("$[0].quantity", equalTo(12)));
     }
 
     @Test
@@ -194,6 +251,96 @@ public class BookControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void updatePartBooks_Should_ReturnResultPerBook() throws Exception {
+        String isbn = "9780340960196";
+        List<BookPatchDTO> patches = Collections.singletonList(
+                new BookPatchDTO(isbn, UpdateBookDTO.builder().basePrice(BigDecimal.valueOf(9.99)).build()));
+
+        when(bookService.updateBooks(patches))
+                .thenReturn(Collections.singletonList(
+                        new BulkUpdateResultDTO(isbn, BulkUpdateResultDTO.Status.UPDATED)));
+
+        mvc.perform(
+                patch("/api/v1/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Collections.singletonMap("books", patches))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].isbn", equalTo(isbn)))
+                .andExpect(jsonPath("$[0].status", equalTo("UPDATED")));
+    }
+
+    @Test
+    public void updatePartBooks_Should_ApplyPatchesChunkByChunk() throws Exception {
+        List<BookPatchDTO> patches = Arrays.asList(
+                new BookPatchDTO("9780340960196", UpdateBookDTO.builder().quantity(1).build()),
+                new BookPatchDTO("9781408855690", UpdateBookDTO.builder().quantity(2).build()),
+                new BookPatchDTO("9780241431108", UpdateBookDTO.builder().quantity(3).build()));
+
+        when(bookService.updateBooks(anyList())).thenAnswer(invocationOnMock ->
+                invocationOnMock.<List<BookPatchDTO>>getArgument(0).stream()
+                        .map(patch -> new BulkUpdateResultDTO(patch.getIsbn(), BulkUpdateResultDTO.Status.UPDATED))
+                        .collect(Collectors.toList()));
+
+        mvc.perform(
+                patch("/api/v1/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Collections.singletonMap("books", patches))))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].isbn", contains("9780340960196", "9781408855690", "9780241431108")));
+
+        verify(bookService).updateBooks(patches.subList(0, 2));
+        verify(bookService).updateBooks(patches.subList(2, 3));
+    }
+
+    @Test
+    public void updatePartBooks_Should_ReportInvalidPatch_And_ApplyOthers() throws Exception {
+        when(bookService.updateBooks(anyList())).thenReturn(Collections.singletonList(
+                new BulkUpdateResultDTO("9781408855690", BulkUpdateResultDTO.Status.UPDATED)));
+
+        mvc.perform(
+                patch("/api/v1/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"books\" : [{\"isbn\" : \"9780340960196\", \"book\" : {\"pages\" : -1}}, " +
+                        "{\"isbn\" : \"9781408855690\", \"book\" : {\"pages\" : 10}}]}"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", equalTo("INVALID")))
+                .andExpect(jsonPath("$[1].status", equalTo("UPDATED")));
+
+        verify(bookService).updateBooks(Collections.singletonList(
+                new BookPatchDTO("9781408855690", UpdateBookDTO.builder().pages(10).build())));
+    }
+
+    @Test
+    public void updatePartBooks_Should_ReturnBadRequest_When_NoPatchesGiven() throws Exception {
+        mvc.perform(
+                patch("/api/v1/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"books\" : []}"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        verify(bookService, never()).updateBooks(anyList());
+    }
+
+    @Test
+    public void updatePartBooks_Should_ReturnBadRequest_When_BodyBreaksOff() throws Exception {
+        mvc.perform(
+                patch("/api/v1/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("{\"books\" : [{\"isbn\" : \"9780340960196\", \"book\" : {\"pages\" : 1}}"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void deleteBook_Should_ReturnNoContentStatus_When_BookIsFound() throws Exception {
         String isbn = "9780340960196";
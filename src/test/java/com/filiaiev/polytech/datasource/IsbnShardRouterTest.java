@@ -0,0 +1,105 @@
+package com.filiaiev.polytech.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IsbnShardRouterTest {
+
+    private static final int SHARDS = 3;
+
+    private ShardingProperties properties;
+    private ShardRoutingDataSource shardRoutingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private IsbnShardRouter router;
+
+    @BeforeEach
+    private void prepareShards() {
+        properties = new ShardingProperties();
+        properties.setEnabled(true);
+        properties.setStrategy(ShardingProperties.Strategy.PREFIX);
+        properties.getPrefixes().put("9780", 0);
+        properties.getPrefixes().put("97814", 2);
+        properties.getPrefixes().put("9781", 1);
+
+        List<DataSource> shards = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            ShardingProperties.Shard shardProperties = new ShardingProperties.Shard();
+            shardProperties.setUrl("jdbc:h2:mem:router-test-" + shard + ";DB_CLOSE_DELAY=-1");
+            properties.getShards().add(shardProperties);
+
+            DataSource dataSource = DataSourceBuilder.create().url(shardProperties.getUrl()).build();
+            new JdbcTemplate(dataSource).execute("CREATE TABLE book(isbn VARCHAR(255) PRIMARY KEY)");
+            shards.add(dataSource);
+        }
+
+        shardRoutingDataSource = new ShardRoutingDataSource(shards);
+        shardRoutingDataSource.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        router = new IsbnShardRouter(properties, new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    private void dropShards() {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            try (ShardScope ignored = router.route(shard)) {
+                jdbcTemplate.execute("DROP TABLE book");
+            }
+        }
+        router.shutdown();
+        shardRoutingDataSource.close();
+    }
+
+    @Test
+    public void RouteIsbnByLongestMatchingPrefix() {
+        assertThat(router.shardOf("9780340960196"), equalTo(0));
+        assertThat(router.shardOf("978-1-40-889475-0"), equalTo(2));
+        assertThat(router.shardOf("9781526637703"), equalTo(1));
+    }
+
+    @Test
+    public void RouteUnmatchedIsbnByHash() {
+        assertThat(router.shardOf("9798886451740"), equalTo(Math.floorMod("9798886451740".hashCode(), SHARDS)));
+        assertThat(router.shardOf("979-8886451740"), equalTo(router.shardOf("9798886451740")));
+    }
+
+    @Test
+    public void ScatterGatherMergesSortedResultsFromEveryShard() {
+        List<String> isbns = Arrays.asList("9781408894750", "9780340960196", "9781526637703",
+                "9780241431108", "9798886451740", "9781408855690");
+
+        for (String isbn : isbns) {
+            try (ShardScope ignored = router.route(isbn)) {
+                jdbcTemplate.update("INSERT INTO book(isbn) VALUES (?)", isbn);
+            }
+        }
+
+        try (ShardScope ignored = router.route(0)) {
+            assertThat(jdbcTemplate.queryForList("SELECT isbn FROM book", String.class),
+                    everyItem(startsWith("9780")));
+        }
+
+        List<String> merged = router.scatterGather(
+                () -> jdbcTemplate.queryForList("SELECT isbn FROM book ORDER BY isbn", String.class),
+                Comparator.naturalOrder());
+
+        List<String> expected = new ArrayList<>(isbns);
+        expected.sort(Comparator.naturalOrder());
+        assertThat(merged, equalTo(expected));
+    }
+}
@@ -0,0 +1,86 @@
+package com.filiaiev.polytech.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReadYourWritesFilterTest {
+
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofMillis(1500));
+
+    @Test
+    public void SetLastWriteCookie_When_RequestWrote() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", "/api/v1/books");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long before = System.currentTimeMillis();
+
+        filter.doFilter(request, response, (req, res) -> {
+            ReplicationContext.current().markWrite();
+            res.getOutputStream().write("[]".getBytes(StandardCharsets.UTF_8));
+            res.flushBuffer();
+        });
+
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertThat(cookie, notNullValue());
+        assertThat(Long.parseLong(cookie.getValue()), greaterThanOrEqualTo(before));
+        assertThat(cookie.getMaxAge(), equalTo(2));
+        assertThat(response.getContentAsString(), equalTo("[]"));
+        assertThat(ReplicationContext.current(), nullValue());
+    }
+
+    @Test
+    public void SetLastWriteCookie_BeforeBodyIsCommitted_WithoutBufferingBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> contentWhileFiltering = new AtomicReference<>();
+
+        filter.doFilter(new MockHttpServletRequest("PUT", "/api/v1/books/1"), response, (req, res) -> {
+            ReplicationContext.current().markWrite();
+            res.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+            res.flushBuffer();
+            contentWhileFiltering.set(response.getContentAsString());
+            assertThat(response.getCookie(ReadYourWritesFilter.COOKIE_NAME), notNullValue());
+        });
+
+        assertThat(contentWhileFiltering.get(), equalTo("{}"));
+        assertThat(response.getCookies(), arrayWithSize(1));
+    }
+
+    @Test
+    public void SetLastWriteCookie_When_RequestWroteWithoutBody() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("DELETE", "/api/v1/books/1"), response,
+                (req, res) -> ReplicationContext.current().markWrite());
+
+        assertThat(response.getCookie(ReadYourWritesFilter.COOKIE_NAME), notNullValue());
+    }
+
+    @Test
+    public void SetNoCookie_When_RequestDidNotWrite() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("DELETE", "/api/v1/books/1"), response, (req, res) -> { });
+
+        assertThat(response.getCookie(ReadYourWritesFilter.COOKIE_NAME), nullValue());
+    }
+
+    @Test
+    public void ExposeLastWriteFromCookieToRead() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME, "1234"));
+        AtomicReference<Long> lastWrite = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> lastWrite.set(ReplicationContext.current().getLastWriteMillis()));
+
+        assertThat(lastWrite.get(), equalTo(1234L));
+    }
+}
@@ -0,0 +1,117 @@
+package com.filiaiev.polytech.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ReplicationRoutingDataSourceTest {
+
+    private ReplicationRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    private void prepareDatabases(Duration readYourWritesWindow) {
+        routingDataSource = new ReplicationRoutingDataSource(
+                database("primary"), database("replica"), readYourWritesWindow);
+        routingDataSource.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    private void closeDatabases() {
+        ReplicationContext.exit();
+        routingDataSource.close();
+    }
+
+    @Test
+    public void ReadOnlyTransactionGoesToReplica() {
+        prepareDatabases(Duration.ZERO);
+
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("replica"));
+    }
+
+    @Test
+    public void WriteTransactionGoesToPrimary() {
+        prepareDatabases(Duration.ZERO);
+
+        assertThat(writeTransaction.execute(status -> currentDatabase()), equalTo("primary"));
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("replica"));
+    }
+
+    @Test
+    public void ReadOnlyTransactionGoesToPrimary_When_CallerWroteWithinReadYourWritesWindow() {
+        prepareDatabases(Duration.ofMinutes(1));
+        ReplicationContext.enter(0);
+
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("replica"));
+        writeTransaction.execute(status -> currentDatabase());
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("primary"));
+    }
+
+    @Test
+    public void ReadOnlyTransactionGoesToReplica_When_OnlyOtherCallersWroteWithinReadYourWritesWindow() {
+        prepareDatabases(Duration.ofMinutes(1));
+
+        ReplicationContext.enter(0);
+        writeTransaction.execute(status -> currentDatabase());
+        ReplicationContext.exit();
+
+        // writes of threads working for no caller do not count either
+        writeTransaction.execute(status -> currentDatabase());
+
+        ReplicationContext.enter(0);
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("replica"));
+    }
+
+    @Test
+    public void ReadOnlyTransactionGoesToPrimary_When_CallerBringsRecentWriteTime() {
+        prepareDatabases(Duration.ofMinutes(1));
+        ReplicationContext.enter(System.currentTimeMillis() - 1000);
+
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("primary"));
+    }
+
+    @Test
+    public void ReadOnlyTransactionGoesToPrimary_When_ThreadIsPinnedToPrimary() {
+        prepareDatabases(Duration.ZERO);
+
+        try (ReplicationContext.Scope ignored = ReplicationContext.onPrimary()) {
+            assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("primary"));
+        }
+        assertThat(readOnlyTransaction.execute(status -> currentDatabase()), equalTo("replica"));
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = DataSourceBuilder.create()
+                .url("jdbc:h2:mem:replication-test-" + name)
+                .build();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS marker");
+        jdbcTemplate.execute("CREATE TABLE marker(name VARCHAR(16))");
+        jdbcTemplate.update("INSERT INTO marker(name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,91 @@
+package com.filiaiev.polytech.datasource;
+
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.repository.BookRepository;
+import com.filiaiev.polytech.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@SpringBootTest
+@ActiveProfiles("sharded")
+public class ShardedBookStoreTest {
+
+    // one isbn per prefix of application-sharded.yml, plus one routed by hash
+    private static final List<String> ISBNS = Arrays.asList("9780340960196", "9781408855690", "9791234567897");
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @BeforeEach
+    private void createBooks() {
+        ISBNS.forEach(isbn -> bookService.createBook(book(isbn)));
+    }
+
+    @AfterEach
+    private void deleteBooks() {
+        ISBNS.forEach(bookService::deleteBook);
+    }
+
+    @Test
+    public void CreatedBooksAreStoredOnlyOnShardOfTheirIsbn() {
+        assertThat(shardRouter, instanceOf(IsbnShardRouter.class));
+        assertThat(shardRouter.shardOf("9780340960196"), equalTo(0));
+        assertThat(shardRouter.shardOf("9781408855690"), equalTo(1));
+
+        for (String isbn : ISBNS) {
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                try (ShardScope ignored = shardRouter.route(shard)) {
+                    assertThat(isbn + " on shard " + shard, bookRepository.existsById(isbn),
+                            equalTo(shard == shardRouter.shardOf(isbn)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void GetBook_ReadsFromShardOfIsbn() {
+        for (String isbn : ISBNS) {
+            assertThat(bookService.getBook(isbn), hasProperty("isbn", equalTo(isbn)));
+        }
+    }
+
+    @Test
+    public void GetAllBooks_MergesBooksOfEveryShardInIsbnOrder() {
+        List<String> isbns = bookService.getAllBooks().stream()
+                .map(BookDTO::getIsbn)
+                .collect(Collectors.toList());
+
+        assertThat(isbns, equalTo(ISBNS));
+    }
+
+    private static BookDTO book(String isbn) {
+        return BookDTO.builder()
+                .isbn(isbn)
+                .title("Book " + isbn)
+                .genreName("Science Fiction")
+                .pages(412)
+                .basePrice(BigDecimal.valueOf(23.25))
+                .quantity(12)
+                .publishDate(LocalDate.of(2015, 7, 16))
+                .authorName("Frank Herbert").build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.filiaiev.polytech.repository;
+
+import com.filiaiev.polytech.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class BookBatchRepositoryImplTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private BookBatchRepositoryImpl repository;
+
+    @BeforeEach
+    private void prepareDatabase() {
+        DataSource dataSource = DataSourceBuilder.create()
+                .url("jdbc:h2:mem:batch-test;DATABASE_TO_UPPER=false")
+                .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS book");
+        new ResourceDatabasePopulator(new ClassPathResource("db/shard-schema.sql")).execute(dataSource);
+
+        repository = new BookBatchRepositoryImpl(new NamedParameterJdbcTemplate(dataSource),
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(repository, "chunkSize", 2);
+
+        repository.insertAll(Arrays.asList(book("9780340960196"), book("9781408855690"), book("9780241431108")));
+    }
+
+    @Test
+    public void UpdateAll_RetriesRejectedChunkRowByRow() {
+        int[] counts = repository.updateAll(Collections.singleton("basePrice"), Arrays.asList(
+                price("9780340960196", "11.50"),
+                price("9781408855690", "123456789012.5"),
+                price("9780241431108", "12.50"),
+                price("111111111111", "13.50")));
+
+        assertThat(counts, equalTo(new int[]{1, Statement.EXECUTE_FAILED, 1, 0}));
+        assertThat(basePrice("9780340960196"), equalTo(new BigDecimal("11.50")));
+        assertThat(basePrice("9781408855690"), equalTo(new BigDecimal("9.99")));
+        assertThat(basePrice("9780241431108"), equalTo(new BigDecimal("12.50")));
+    }
+
+    private BigDecimal basePrice(String isbn) {
+        return jdbcTemplate.queryForObject("SELECT base_price FROM book WHERE isbn = ?", BigDecimal.class, isbn);
+    }
+
+    private static Book price(String isbn, String basePrice) {
+        return Book.builder().isbn(isbn).basePrice(new BigDecimal(basePrice)).build();
+    }
+
+    private static Book book(String isbn) {
+        return Book.builder()
+                .isbn(isbn)
+                .title("Title")
+                .genreName("Genre")
+                .pages(100)
+                .basePrice(new BigDecimal("9.99"))
+                .quantity(5)
+                .publishDate(LocalDate.of(2020, 1, 31))
+                .authorName("Author").build();
+    }
+}
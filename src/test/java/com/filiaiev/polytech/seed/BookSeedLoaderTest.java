@@ -0,0 +1,151 @@
+package com.filiaiev.polytech.seed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.filiaiev.polytech.datasource.SingleShardRouter;
+import com.filiaiev.polytech.model.Book;
+import com.filiaiev.polytech.repository.BookRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import javax.validation.Validation;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BookSeedLoaderTest {
+
+    private static final int ROWS = 1000;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @TempDir
+    Path directory;
+
+    private SeedProperties properties;
+    private BookSeedLoader loader;
+    private List<Book> inserted;
+    private List<Integer> statementSizes;
+
+    @BeforeEach
+    private void prepareLoader() {
+        properties = new SeedProperties();
+        properties.setBatchSize(64);
+        properties.setSliceSize(4096);
+        properties.setParallelism(4);
+
+        loader = new BookSeedLoader(properties, bookRepository, new SingleShardRouter(),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper().registerModule(new JavaTimeModule()),
+                new DefaultResourceLoader(), eventPublisher);
+
+        inserted = Collections.synchronizedList(new ArrayList<>());
+        statementSizes = Collections.synchronizedList(new ArrayList<>());
+        lenient().doAnswer(invocationOnMock -> {
+            List<Book> batch = invocationOnMock.getArgument(0);
+            statementSizes.add(batch.size());
+            inserted.addAll(batch);
+            return null;
+        }).when(bookRepository).insertAll(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    public void LoadCsvInParallelSlices_SkippingInvalidRows() throws Exception {
+        StringBuilder csv = new StringBuilder("isbn,title,genre_name,pages,base_price,quantity,publish_date,author_name\r\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append(isbn(i)).append(",\"Title, \"\"part\"\" ").append(i).append("\",Genre,100,9.99,")
+                    .append(i % 100 == 0 ? -1 : 5).append(",2020-01-31,Author\r\n");
+        }
+        csv.append("not,enough,columns\r\n");
+
+        load("books.csv", csv.toString());
+
+        assertThat(inserted, iterableWithSize(ROWS - ROWS / 100));
+        assertThat(statementSizes, everyItem(lessThanOrEqualTo(64)));
+        assertThat(inserted, hasItem(allOf(
+                hasProperty("isbn", equalTo(isbn(1))),
+                hasProperty("title", equalTo("Title, \"part\" 1")),
+                hasProperty("basePrice", equalTo(new BigDecimal("9.99"))),
+                hasProperty("publishDate", equalTo(LocalDate.of(2020, 1, 31)))
+        )));
+    }
+
+    @Test
+    public void LoadNdjson() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            ndjson.append("{\"isbn\":\"").append(isbn(i)).append("\",\"title\":\"Title ").append(i)
+                    .append("\",\"genreName\":\"Genre\",\"pages\":100,\"basePrice\":9.99,\"quantity\":5,")
+                    .append("\"publishDate\":\"2020-01-31\",\"authorName\":\"Author\"}\n");
+        }
+
+        load("books.ndjson", ndjson.toString());
+
+        assertThat(inserted, iterableWithSize(ROWS));
+        assertThat(inserted, hasItem(hasProperty("title", equalTo("Title " + (ROWS - 1)))));
+    }
+
+    @Test
+    public void RefuseTrafficWhileLoading_And_AcceptTrafficOnceLoaded() throws Exception {
+        load("books.csv", "isbn,title,genre_name,pages,base_price,quantity,publish_date,author_name\n"
+                + isbn(1) + ",Title,Genre,100,9.99,5,2020-01-31,Author\n");
+
+        InOrder inOrder = inOrder(eventPublisher, bookRepository);
+        inOrder.verify(eventPublisher).publishEvent(readiness(ReadinessState.REFUSING_TRAFFIC));
+        inOrder.verify(bookRepository).insertAll(ArgumentMatchers.anyList());
+        inOrder.verify(eventPublisher).publishEvent(readiness(ReadinessState.ACCEPTING_TRAFFIC));
+    }
+
+    @Test
+    public void KeepRefusingTraffic_When_LoadFails() {
+        properties.setLocation(directory.resolve("missing.csv").toUri().toString());
+
+        Assertions.assertThrows(IOException.class, () -> loader.run(new DefaultApplicationArguments()));
+
+        verify(eventPublisher).publishEvent(readiness(ReadinessState.REFUSING_TRAFFIC));
+        verify(eventPublisher, never()).publishEvent(readiness(ReadinessState.ACCEPTING_TRAFFIC));
+    }
+
+    private void load(String fileName, String content) throws Exception {
+        Path file = directory.resolve(fileName);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        properties.setLocation(file.toUri().toString());
+
+        loader.run(new DefaultApplicationArguments());
+    }
+
+    private static AvailabilityChangeEvent<?> readiness(ReadinessState state) {
+        return ArgumentMatchers.argThat(event -> event.getState() == state);
+    }
+
+    private static String isbn(int i) {
+        return String.format("978%010d", i);
+    }
+}
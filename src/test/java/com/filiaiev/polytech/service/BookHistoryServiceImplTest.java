@@ -0,0 +1,251 @@
+package com.filiaiev.polytech.service;
+
+import com.filiaiev.polytech.datasource.SingleShardRouter;
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookHistoryPointDTO;
+import com.filiaiev.polytech.model.BookHistoryChunk;
+import com.filiaiev.polytech.repository.BookHistoryChunkRepository;
+import com.filiaiev.polytech.service.impl.BookHistoryServiceImpl;
+import com.filiaiev.polytech.util.DeltaEncodedSeries;
+import org.hamcrest.FeatureMatcher;
+import org.hamcrest.Matcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookHistoryServiceImplTest {
+
+    @Mock(lenient = true)
+    private BookHistoryChunkRepository chunkRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<Long, BookHistoryChunk> rows = new ConcurrentSkipListMap<>();
+    private BookHistoryServiceImpl bookHistoryService;
+
+    @BeforeEach
+    private void startService() {
+        storeRowsInMap();
+        bookHistoryService = newService();
+        bookHistoryService.start();
+    }
+
+    @AfterEach
+    private void stopService() throws InterruptedException {
+        bookHistoryService.stop();
+    }
+
+    @Test
+    public void RecordedChangesBecomeVisibleAsHistory() throws InterruptedException {
+        String isbn = "9780340960196";
+        Instant before = Instant.now();
+
+        bookHistoryService.record(book(isbn, "23.25", 12));
+        bookHistoryService.record(book(isbn, "23.25", 12));
+        bookHistoryService.record(book(isbn, "19.9", 12));
+        bookHistoryService.record(book(isbn, "19.90", 11));
+        bookHistoryService.record(book("9781408855690", "6.99", 30));
+
+        List<BookHistoryPointDTO> history = awaitHistory(isbn, 3);
+
+        assertThat(history, contains(
+                allOf(hasProperty("basePrice", equalTo(new BigDecimal("23.25"))), hasProperty("quantity", equalTo(12))),
+                allOf(hasProperty("basePrice", equalTo(new BigDecimal("19.90"))), hasProperty("quantity", equalTo(12))),
+                allOf(hasProperty("basePrice", equalTo(new BigDecimal("19.90"))), hasProperty("quantity", equalTo(11)))
+        ));
+        assertThat(history, everyItem(hasProperty("timestamp", greaterThanOrEqualTo(before.minusMillis(1)))));
+        assertThat(bookHistoryService.getHistory(isbn, null, before.minusSeconds(60)), empty());
+        assertThat(bookHistoryService.getHistory("notfound", null, null), empty());
+    }
+
+    @Test
+    public void PartialChangesCarryOverUnchangedValues() throws InterruptedException {
+        String isbn = "9780340960196";
+
+        bookHistoryService.record(isbn, new BigDecimal("23.25"), null);
+        bookHistoryService.record(isbn, null, 12);
+        bookHistoryService.record(isbn, new BigDecimal("19.90"), null);
+
+        List<BookHistoryPointDTO> history = awaitHistory(isbn, 3);
+
+        assertThat(history, contains(
+                allOf(hasProperty("basePrice", equalTo(new BigDecimal("23.25"))), hasProperty("quantity", nullValue())),
+                allOf(hasProperty("basePrice", equalTo(new BigDecimal("23.25"))), hasProperty("quantity", equalTo(12))),
+                allOf(hasProperty("basePrice", equalTo(new BigDecimal("19.90"))), hasProperty("quantity", equalTo(12)))
+        ));
+    }
+
+    @Test
+    public void FlushInsertsNewRows_WithoutRewritingStoredOnes() throws InterruptedException {
+        String isbn = "9780340960196";
+
+        bookHistoryService.record(isbn, new BigDecimal("23.25"), 12);
+        awaitRows(1, 1);
+        BookHistoryChunk first = rows.values().iterator().next();
+        byte[] firstPayload = first.getPayload().clone();
+
+        bookHistoryService.record(isbn, new BigDecimal("19.90"), 12);
+        awaitRows(2, 2);
+
+        assertThat(rows.values(), everyItem(hasProperty("isbn", equalTo(isbn))));
+        assertThat(rows.get(first.getId()).getPayload(), equalTo(firstPayload));
+        assertThat(bookHistoryService.getHistory(isbn, null, null), hasSize(2));
+        verify(chunkRepository, times(2)).save(any(BookHistoryChunk.class));
+    }
+
+    @Test
+    public void ChangesWithinSameMillisecondAreKeptInRecordedOrder() throws InterruptedException {
+        String isbn = "9780340960196";
+        List<Integer> recorded = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            recorded.add(i % 2 == 0 ? 12 : 11);
+            bookHistoryService.record(isbn, null, recorded.get(i));
+        }
+
+        List<BookHistoryPointDTO> history = awaitHistory(isbn, 50);
+
+        assertThat(history.stream().map(BookHistoryPointDTO::getQuantity).collect(Collectors.toList()),
+                equalTo(recorded));
+        assertThat(history.stream().map(BookHistoryPointDTO::getTimestamp).collect(Collectors.toList()),
+                equalTo(history.stream().map(BookHistoryPointDTO::getTimestamp).sorted()
+                        .collect(Collectors.toList())));
+    }
+
+    @Test
+    public void ChangesBeyondFullQueueAreCounted() {
+        BookHistoryServiceImpl stopped = new BookHistoryServiceImpl(chunkRepository, new SingleShardRouter(),
+                transactionManager, 1, 4, Duration.ofMillis(10), Duration.ofMinutes(10), Duration.ofMillis(1));
+
+        stopped.record("9780340960196", new BigDecimal("23.25"), 12);
+        stopped.record("9780340960196", new BigDecimal("19.90"), 12);
+        stopped.record("9780340960196", new BigDecimal("17.50"), 12);
+
+        assertThat(stopped.getDroppedChanges(), equalTo(2L));
+    }
+
+    @Test
+    public void StoredHistoryIsReadBackAfterRestart_WithValuesCarriedOverFromOlderChunks()
+            throws InterruptedException {
+        String isbn = "9780340960196";
+        for (int quantity = 1; quantity <= 10; quantity++) {
+            bookHistoryService.record(isbn, new BigDecimal("23.25"), quantity);
+        }
+        awaitHistory(isbn, 10);
+        bookHistoryService.stop();
+
+        // four points per chunk at most, and a new row for every flush
+        assertThat(pointCount(), equalTo(10));
+        assertThat(rows.values(), everyItem(hasProperty("payload", hasPointCount(lessThanOrEqualTo(4)))));
+
+        bookHistoryService = newService();
+        bookHistoryService.start();
+        Instant restarted = Instant.now();
+        Thread.sleep(2);
+        bookHistoryService.record(isbn, null, 11);
+
+        List<BookHistoryPointDTO> history = awaitHistory(isbn, 11);
+
+        assertThat(history.stream().map(BookHistoryPointDTO::getQuantity).collect(Collectors.toList()),
+                contains(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11));
+        assertThat(history, everyItem(hasProperty("basePrice", equalTo(new BigDecimal("23.25")))));
+        assertThat(bookHistoryService.getHistory(isbn, restarted, null), contains(allOf(
+                hasProperty("basePrice", equalTo(new BigDecimal("23.25"))), hasProperty("quantity", equalTo(11)))));
+    }
+
+    private BookHistoryServiceImpl newService() {
+        return new BookHistoryServiceImpl(chunkRepository, new SingleShardRouter(), transactionManager,
+                100, 4, Duration.ofMillis(10), Duration.ofMinutes(10), Duration.ofMillis(10));
+    }
+
+    private void storeRowsInMap() {
+        AtomicLong ids = new AtomicLong();
+        when(chunkRepository.save(any(BookHistoryChunk.class))).thenAnswer(invocationOnMock -> {
+            BookHistoryChunk chunk = invocationOnMock.getArgument(0);
+            chunk.setId(ids.incrementAndGet());
+            rows.put(chunk.getId(), chunk);
+            return chunk;
+        });
+        when(chunkRepository.findOverlapping(anyString(), anyLong(), anyLong())).thenAnswer(invocationOnMock ->
+                rows.values().stream()
+                        .filter(chunk -> chunk.getIsbn().equals(invocationOnMock.getArgument(0))
+                                && chunk.getMaxTs() >= invocationOnMock.<Long>getArgument(1)
+                                && chunk.getMinTs() < invocationOnMock.<Long>getArgument(2))
+                        .sorted(Comparator.comparing(BookHistoryChunk::getId))
+                        .collect(Collectors.toList()));
+        when(chunkRepository.findFirstByIsbnAndMinTsLessThanOrderByMinTsDesc(anyString(), anyLong()))
+                .thenAnswer(invocationOnMock -> rows.values().stream()
+                        .filter(chunk -> chunk.getIsbn().equals(invocationOnMock.getArgument(0))
+                                && chunk.getMinTs() < invocationOnMock.<Long>getArgument(1))
+                        .max(Comparator.comparing(BookHistoryChunk::getMinTs)));
+    }
+
+    private void awaitRows(int size, int points) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(rows.size() == size && pointCount() == points) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(rows.values(), hasSize(size));
+    }
+
+    private int pointCount() {
+        return rows.values().stream().mapToInt(chunk -> pointCount(chunk.getPayload())).sum();
+    }
+
+    private static int pointCount(byte[] payload) {
+        int[] count = {0};
+        DeltaEncodedSeries.decode(payload, (t, values) -> count[0]++);
+        return count[0];
+    }
+
+    private static Matcher<byte[]> hasPointCount(Matcher<Integer> count) {
+        return new FeatureMatcher<byte[], Integer>(count, "payload with point count", "point count") {
+            @Override
+            protected Integer featureValueOf(byte[] payload) {
+                return pointCount(payload);
+            }
+        };
+    }
+
+    private List<BookHistoryPointDTO> awaitHistory(String isbn, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        List<BookHistoryPointDTO> history = bookHistoryService.getHistory(isbn, null, null);
+        while (history.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            history = bookHistoryService.getHistory(isbn, null, null);
+        }
+        return history;
+    }
+
+    private static BookDTO book(String isbn, String basePrice, int quantity) {
+        return BookDTO.builder()
+                .isbn(isbn)
+                .basePrice(new BigDecimal(basePrice))
+                .quantity(quantity).build();
+    }
+}
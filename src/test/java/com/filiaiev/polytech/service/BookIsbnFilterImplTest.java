@@ -0,0 +1,72 @@
+package com.filiaiev.polytech.service;
+
+import com.filiaiev.polytech.datasource.SingleShardRouter;
+import com.filiaiev.polytech.repository.BookRepository;
+import com.filiaiev.polytech.service.impl.BookIsbnFilterImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookIsbnFilterImplTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private BookIsbnFilterImpl bookIsbnFilter;
+
+    @BeforeEach
+    private void prepareFilter() {
+        bookIsbnFilter = new BookIsbnFilterImpl(bookRepository, new SingleShardRouter());
+        ReflectionTestUtils.setField(bookIsbnFilter, "minCapacity", 1000L);
+        ReflectionTestUtils.setField(bookIsbnFilter, "falsePositiveRate", 0.01);
+    }
+
+    @Test
+    public void ReportEveryIsbnAsPossiblyPresent_BeforeFirstRebuild() {
+        assertThat(bookIsbnFilter.mightContain("9780340960196"), is(true));
+    }
+
+    @Test
+    public void RuleOutUnknownIsbn_AfterRebuild() {
+        when(bookRepository.count()).thenReturn(2L);
+        when(bookRepository.findAllIsbns()).thenReturn(Arrays.asList("9780340960196", "9781408855690"));
+
+        bookIsbnFilter.rebuild();
+
+        assertThat(bookIsbnFilter.mightContain("9780340960196"), is(true));
+        assertThat(bookIsbnFilter.mightContain("9781408855690"), is(true));
+        assertThat(bookIsbnFilter.mightContain("9780241431108"), is(false));
+    }
+
+    @Test
+    public void KeepIsbnAddedWhileRebuilding() {
+        when(bookRepository.count()).thenReturn(1L);
+        // the isbn commits while the scan runs but is not part of what the scan returns
+        when(bookRepository.findAllIsbns())
+                .thenAnswer(invocationOnMock -> {
+                    bookIsbnFilter.add("9780241431108");
+                    return Arrays.asList("9780340960196");
+                })
+                .thenAnswer(invocationOnMock -> {
+                    bookIsbnFilter.add("9781408855690");
+                    return Arrays.asList("9780340960196", "9780241431108");
+                });
+
+        bookIsbnFilter.rebuild();
+        assertThat(bookIsbnFilter.mightContain("9780241431108"), is(true));
+
+        bookIsbnFilter.rebuild();
+        assertThat(bookIsbnFilter.mightContain("9780241431108"), is(true));
+        assertThat(bookIsbnFilter.mightContain("9781408855690"), is(true));
+    }
+}
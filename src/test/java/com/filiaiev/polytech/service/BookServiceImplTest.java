@@ -2,7 +2,11 @@ package com.filiaiev.polytech.service;
 
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.filiaiev.polytech.datasource.ShardRouter;
+import com.filiaiev.polytech.datasource.SingleShardRouter;
 import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.BookPatchDTO;
+import com.filiaiev.polytech.dto.BulkUpdateResultDTO;
 import com.filiaiev.polytech.dto.UpdateBookDTO;
 import com.filiaiev.polytech.exception.BookNotFoundException;
 import com.filiaiev.polytech.mapper.BookMapper;
@@ -16,15 +20,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -43,10 +57,27 @@ public class BookServiceImplTest {
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private BookIsbnFilter bookIsbnFilter;
+
+    @Spy
+    private ShardRouter shardRouter = new SingleShardRouter();
+
+    @Mock
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    @Mock
+    private BookHistoryService bookHistoryService;
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     private List<Book> books;
 
     @BeforeEach
     private void prepareData() {
+        lenient().when(bookIsbnFilter.mightContain(anyString())).thenReturn(true);
+
         books = new ArrayList<>();
 
         books.add(Book.builder()
@@ -73,7 +104,7 @@ public class BookServiceImplTest {
 
     @Test
     public void ReturnAllBooks() {
-        when(bookRepository.findAll()).thenReturn(books);
+        when(bookRepository.findAll(ArgumentMatchers.any(Sort.class))).thenReturn(books);
 
         List<BookDTO> allBooks = bookService.getAllBooks();
 
@@ -106,6 +137,20 @@ public class BookServiceImplTest {
                 () ->  bookService.getBook(anyString()));
     }
 
+    @Test
+    public void GetBookWithGivenIsbn_Success_When_FilterMissesIsbn() {
+        String isbn = "9780340960196";
+        lenient().when(bookIsbnFilter.mightContain(isbn)).thenReturn(false);
+
+        when(bookRepository.findById(isbn))
+                .thenReturn(books.stream()
+                        .filter(v -> v.getIsbn().equals(isbn))
+                        .findFirst()
+                );
+
+        assertThat(bookService.getBook(isbn).getIsbn(), equalTo(isbn));
+    }
+
     @Test
     public void CreateNewBookAndAddToDataStore() {
         BookDTO newBookDTO = BookDTO.builder()
@@ -128,6 +173,9 @@ public class BookServiceImplTest {
 
         bookService.createBook(newBookDTO);
 
+        verify(bookIsbnFilter).add("9780241431108");
+        verify(bookSuggestionIndex).index(newBookDTO);
+        verify(bookHistoryService).record(newBookDTO);
         assertThat(books, allOf(
                     iterableWithSize(previousBooksSize + 1),
                     hasItem(hasProperty("isbn", equalTo("9780241431108")))
@@ -191,6 +239,36 @@ public class BookServiceImplTest {
         ));
     }
 
+    @Test
+    public void UpdateOrCreateEntireBookWithGivenIsbn_Success_Update_When_FilterMissesExistingIsbn() {
+        String isbn = "9780340960196";
+        when(bookIsbnFilter.mightContain(isbn)).thenReturn(false);
+
+        UpdateBookDTO bookUpdateDTO = UpdateBookDTO.builder()
+                .title("Dune")
+                .genreName("Fantasy")
+                .pages(500)
+                .basePrice(BigDecimal.valueOf(50.99))
+                .quantity(5)
+                .publishDate(LocalDate.of(2022, 2, 12))
+                .authorName("Frank Herbert").build();
+
+        when(bookRepository.saveAndFlush(ArgumentMatchers.any(Book.class)))
+                .thenThrow(new DataIntegrityViolationException("Unique index or primary key violation"));
+        when(bookRepository.findById(isbn))
+                .thenReturn(books.stream()
+                        .filter(v -> v.getIsbn().equals(isbn))
+                        .findFirst()
+                );
+
+        BookDTO updatedBook = bookService.updateOrCreateBook(isbn, bookUpdateDTO);
+
+        assertThat(updatedBook, is(samePropertyValuesAs(
+                BookMapper.INSTANCE.updateBookDTOtoBookDTO(bookUpdateDTO), "isbn")));
+        verify(bookIsbnFilter).add(isbn);
+        verify(bookRepository, times(1)).saveAndFlush(ArgumentMatchers.any(Book.class));
+    }
+
     @Test
     public void UpdatePartBookWithGivenIsbn_Success() throws JsonMappingException {
         String isbn = "9780340960196";
@@ -220,6 +298,8 @@ public class BookServiceImplTest {
                 bookService.updateBook(isbn, updateBookDTO));
 
         assertThat(updatedBook, is(samePropertyValuesAs(oldBook)));
+        verify(bookSuggestionIndex).index(ArgumentMatchers.argThat(v -> v.getTitle().equals(newTitle)));
+        verify(bookHistoryService).record(ArgumentMatchers.argThat(v -> v.getIsbn().equals(isbn)));
     }
 
     @Test
@@ -235,18 +315,13 @@ public class BookServiceImplTest {
     public void DeleteBookWithGivenIsbn_Success() {
         String isbn = "9780340960196";
 
-        when(bookRepository.existsById(isbn))
-                .thenReturn(books.stream()
-                        .anyMatch(v -> v.getIsbn().equals(isbn))
-                );
-
-        doAnswer(invocationOnMock -> {
-            books.removeIf(v -> v.getIsbn().equals(isbn));
-            return null;
-        }).when(bookRepository).deleteById(isbn);
+        when(bookRepository.deleteByIsbn(isbn))
+                .thenAnswer(invocationOnMock ->
+                        books.removeIf(v -> v.getIsbn().equals(isbn)) ? 1 : 0);
 
         bookService.deleteBook(isbn);
 
+        verify(bookSuggestionIndex).remove(isbn);
         assertThat(books, not(hasItem(
                 hasProperty("isbn", equalTo(isbn))))
         );
@@ -254,10 +329,109 @@ public class BookServiceImplTest {
 
     @Test
     public void DeleteBookWithGivenIsbn_Fail_NotFound() {
-        when(bookRepository.existsById(anyString()))
-                .thenReturn(false);
+        when(bookRepository.deleteByIsbn(anyString()))
+                .thenReturn(0);
 
         Assertions.assertThrows(BookNotFoundException.class,
                 () -> bookService.deleteBook(anyString()));
     }
+
+    @Test
+    public void DeleteBookWithGivenIsbn_Success_When_FilterMissesIsbn() {
+        String isbn = "9780340960196";
+        lenient().when(bookIsbnFilter.mightContain(isbn)).thenReturn(false);
+
+        when(bookRepository.deleteByIsbn(isbn))
+                .thenAnswer(invocationOnMock ->
+                        books.removeIf(v -> v.getIsbn().equals(isbn)) ? 1 : 0);
+
+        bookService.deleteBook(isbn);
+
+        assertThat(books, not(hasItem(
+                hasProperty("isbn", equalTo(isbn))))
+        );
+    }
+
+    @Test
+    public void UpdateBooksInBulk_GroupsPatchesByPresentFields() {
+        List<BookPatchDTO> patches = Arrays.asList(
+                new BookPatchDTO("9780340960196", UpdateBookDTO.builder().basePrice(BigDecimal.valueOf(19.99)).build()),
+                new BookPatchDTO("9781408855690", UpdateBookDTO.builder().title("Renamed").quantity(3).build()),
+                new BookPatchDTO("111111111111", UpdateBookDTO.builder().basePrice(BigDecimal.valueOf(1.99)).build()),
+                new BookPatchDTO("9780241431108", new UpdateBookDTO())
+        );
+
+        when(bookRepository.updateAll(ArgumentMatchers.<Set<String>>any(), ArgumentMatchers.<List<Book>>any()))
+                .thenAnswer(invocationOnMock -> {
+                    List<Book> updated = invocationOnMock.getArgument(1);
+                    return updated.stream()
+                            .mapToInt(v -> books.stream().anyMatch(b -> b.getIsbn().equals(v.getIsbn())) ? 1 : 0)
+                            .toArray();
+                });
+
+        List<BulkUpdateResultDTO> results = bookService.updateBooks(patches);
+
+        verify(bookRepository).updateAll(
+                ArgumentMatchers.eq(Collections.singleton("basePrice")),
+                ArgumentMatchers.argThat(v -> v.size() == 2));
+        verify(bookRepository).updateAll(
+                ArgumentMatchers.eq(new TreeSet<>(Arrays.asList("quantity", "title"))),
+                ArgumentMatchers.argThat(v -> v.size() == 1));
+        assertThat(results, contains(
+                new BulkUpdateResultDTO("9780340960196", BulkUpdateResultDTO.Status.UPDATED),
+                new BulkUpdateResultDTO("9781408855690", BulkUpdateResultDTO.Status.UPDATED),
+                new BulkUpdateResultDTO("111111111111", BulkUpdateResultDTO.Status.NOT_FOUND),
+                new BulkUpdateResultDTO("9780241431108", BulkUpdateResultDTO.Status.SKIPPED)
+        ));
+        verify(bookSuggestionIndex).reindex("9781408855690", patches.get(1).getBook());
+        verifyNoMoreInteractions(bookSuggestionIndex);
+        verify(bookHistoryService).record("9780340960196", BigDecimal.valueOf(19.99), null);
+        verify(bookHistoryService).record("9781408855690", null, 3);
+        verifyNoMoreInteractions(bookHistoryService);
+        verify(bookRepository, never()).findAllById(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void UpdateBooksInBulk_MergesPatchesForSameIsbnInInputOrder() {
+        String isbn = "9780340960196";
+        List<BookPatchDTO> patches = Arrays.asList(
+                new BookPatchDTO(isbn, UpdateBookDTO.builder().basePrice(BigDecimal.ONE).title("A").build()),
+                new BookPatchDTO(isbn, UpdateBookDTO.builder().basePrice(BigDecimal.valueOf(2)).build()),
+                new BookPatchDTO(isbn, UpdateBookDTO.builder().basePrice(BigDecimal.valueOf(3)).title("B").build())
+        );
+
+        when(bookRepository.updateAll(ArgumentMatchers.<Set<String>>any(), ArgumentMatchers.<List<Book>>any()))
+                .thenReturn(new int[]{1});
+
+        List<BulkUpdateResultDTO> results = bookService.updateBooks(patches);
+
+        verify(bookRepository).updateAll(
+                ArgumentMatchers.eq(new TreeSet<>(Arrays.asList("basePrice", "title"))),
+                ArgumentMatchers.argThat(v -> v.size() == 1
+                        && v.get(0).getBasePrice().equals(BigDecimal.valueOf(3))
+                        && v.get(0).getTitle().equals("B")));
+        verifyNoMoreInteractions(ignoreStubs(bookRepository));
+        assertThat(results, everyItem(
+                equalTo(new BulkUpdateResultDTO(isbn, BulkUpdateResultDTO.Status.UPDATED))));
+        assertThat(results, iterableWithSize(3));
+        assertThat(patches.get(0).getBook().getBasePrice(), equalTo(BigDecimal.ONE));
+    }
+
+    @Test
+    public void UpdateBooksInBulk_ReportsFailedRows_And_KeepsOtherResults() {
+        List<BookPatchDTO> patches = Arrays.asList(
+                new BookPatchDTO("9780340960196", UpdateBookDTO.builder().pages(100).build()),
+                new BookPatchDTO("9781408855690", UpdateBookDTO.builder().pages(200).build())
+        );
+
+        when(bookRepository.updateAll(ArgumentMatchers.<Set<String>>any(), ArgumentMatchers.<List<Book>>any()))
+                .thenReturn(new int[]{Statement.EXECUTE_FAILED, 1});
+
+        List<BulkUpdateResultDTO> results = bookService.updateBooks(patches);
+
+        assertThat(results, contains(
+                new BulkUpdateResultDTO("9780340960196", BulkUpdateResultDTO.Status.FAILED),
+                new BulkUpdateResultDTO("9781408855690", BulkUpdateResultDTO.Status.UPDATED)
+        ));
+    }
 }
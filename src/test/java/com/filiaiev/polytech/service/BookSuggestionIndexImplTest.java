@@ -0,0 +1,192 @@
+package com.filiaiev.polytech.service;
+
+import com.filiaiev.polytech.datasource.SingleShardRouter;
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.dto.UpdateBookDTO;
+import com.filiaiev.polytech.repository.BookRepository;
+import com.filiaiev.polytech.repository.BookSuggestionView;
+import com.filiaiev.polytech.service.impl.BookSuggestionIndexImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookSuggestionIndexImplTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BookSuggestionIndexImpl bookSuggestionIndex;
+
+    @BeforeEach
+    private void prepareIndex() {
+        bookSuggestionIndex = new BookSuggestionIndexImpl(
+                bookRepository, new SingleShardRouter(), transactionManager, 10, Duration.ofMillis(20));
+    }
+
+    @AfterEach
+    private void stopIndex() {
+        bookSuggestionIndex.stop();
+    }
+
+    @Test
+    public void RebuildKeepsMutationsMadeWhileScanning() {
+        when(bookRepository.streamSuggestionViews()).thenAnswer(invocationOnMock -> Stream.of(
+                view("9780340960196", "Dune", "Frank Herbert", 12),
+                view("9781408855690", "Harry Potter and the Order of the Phoenix", "J. K. Rowling", 30)
+        ).peek(book -> {
+            // commits racing the scan: one for a row already read, one for a row it will never see
+            if (book.getIsbn().equals("9781408855690")) {
+                bookSuggestionIndex.remove("9780340960196");
+                bookSuggestionIndex.index(BookDTO.builder()
+                        .isbn("9780241431108").title("Harry Harrison").authorName("Jamie Oliver").quantity(5).build());
+            }
+        }));
+
+        bookSuggestionIndex.rebuild();
+
+        assertThat(bookSuggestionIndex.suggest("harry", 10), contains(
+                "Harry Potter and the Order of the Phoenix", "Harry Harrison"));
+        assertThat(bookSuggestionIndex.suggest("dune", 10), empty());
+    }
+
+    @Test
+    public void ReindexAppliesOnlyPatchedFields() {
+        when(bookRepository.streamSuggestionViews()).thenAnswer(invocationOnMock -> Stream.of(
+                view("9780340960196", "Dune", "Frank Herbert", 12),
+                view("9781408855690", "Harry Potter and the Order of the Phoenix", "J. K. Rowling", 30),
+                view("9780241431108", "Harry Harrison", "Jamie Oliver", 5)
+        ));
+        bookSuggestionIndex.rebuild();
+
+        bookSuggestionIndex.reindex("9780241431108", UpdateBookDTO.builder().quantity(50).build());
+
+        assertThat(bookSuggestionIndex.suggest("harry", 10), contains(
+                "Harry Harrison", "Harry Potter and the Order of the Phoenix"));
+        assertThat(bookSuggestionIndex.suggest("jamie", 10), contains("Jamie Oliver"));
+
+        bookSuggestionIndex.reindex("9780340960196", UpdateBookDTO.builder().title("Dune Messiah").build());
+
+        assertThat(bookSuggestionIndex.suggest("dune", 10), contains("Dune Messiah"));
+        assertThat(bookSuggestionIndex.suggest("frank", 10), contains("Frank Herbert"));
+    }
+
+    @Test
+    public void ResyncPicksUpBooksChangedOutsideThisInstance() throws InterruptedException {
+        when(bookRepository.streamSuggestionViews())
+                .thenAnswer(invocationOnMock -> Stream.of(view("9780340960196", "Dune", "Frank Herbert", 12)))
+                .thenAnswer(invocationOnMock -> Stream.of(view("9780340960196", "Dune Messiah", "Frank Herbert", 12)));
+
+        bookSuggestionIndex.start();
+        assertThat(bookSuggestionIndex.suggest("dune", 10), contains("Dune"));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!bookSuggestionIndex.suggest("dune", 10).contains("Dune Messiah")
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(bookSuggestionIndex.suggest("dune", 10), contains("Dune Messiah"));
+    }
+
+    // The endpoint is called on every keystroke with a p99 target of 1 ms, of which the lookup must take a fraction
+    @Test
+    public void SuggestP99StaysUnderOneMillisecond_WhileBooksAreMutated() throws InterruptedException {
+        int books = 20_000;
+        String[] words = {"dune", "harry", "potter", "order", "phoenix", "shadow", "winter", "garden", "river", "night"};
+        Random random = new Random(42);
+        List<BookSuggestionView> views = new ArrayList<>();
+        for (int i = 0; i < books; i++) {
+            views.add(view(Integer.toString(i),
+                    words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)] + " " + i,
+                    words[random.nextInt(words.length)] + " author " + i % 500,
+                    random.nextInt(100)));
+        }
+        when(bookRepository.streamSuggestionViews()).thenAnswer(invocationOnMock -> views.stream());
+        bookSuggestionIndex.rebuild();
+
+        AtomicBoolean mutating = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random writes = new Random(7);
+            while (mutating.get()) {
+                bookSuggestionIndex.reindex(Integer.toString(writes.nextInt(books)),
+                        UpdateBookDTO.builder().quantity(writes.nextInt(100)).build());
+            }
+        });
+        writer.start();
+
+        int readers = 2;
+        int lookups = 50_000;
+        long[] latencies = new long[readers * lookups];
+        List<Thread> threads = new ArrayList<>();
+        for (int reader = 0; reader < readers; reader++) {
+            int offset = reader * lookups;
+            Thread thread = new Thread(() -> {
+                Random keystrokes = new Random(offset);
+                for (int i = -lookups; i < lookups; i++) {
+                    String word = words[keystrokes.nextInt(words.length)];
+                    String prefix = word.substring(0, 1 + keystrokes.nextInt(word.length()));
+                    long start = System.nanoTime();
+                    bookSuggestionIndex.suggest(prefix, 10);
+                    // the first half warms up the JIT
+                    if (i >= 0) {
+                        latencies[offset + i] = System.nanoTime() - start;
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        mutating.set(false);
+        writer.join();
+
+        Arrays.sort(latencies);
+        assertThat(latencies[(int) (latencies.length * 0.99)], lessThan(TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
+    private static BookSuggestionView view(String isbn, String title, String authorName, int quantity) {
+        return new BookSuggestionView() {
+            @Override
+            public String getIsbn() {
+                return isbn;
+            }
+
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public String getAuthorName() {
+                return authorName;
+            }
+
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+        };
+    }
+}
@@ -0,0 +1,198 @@
+package com.filiaiev.polytech.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.filiaiev.polytech.datasource.ReplicationRoutingDataSource;
+import com.filiaiev.polytech.datasource.SingleShardRouter;
+import com.filiaiev.polytech.dto.BookDTO;
+import com.filiaiev.polytech.exception.BookNotFoundException;
+import com.filiaiev.polytech.model.Book;
+import com.filiaiev.polytech.repository.BookRepository;
+import com.filiaiev.polytech.service.impl.BookServiceImpl;
+import com.filiaiev.polytech.service.impl.CoalescingBookService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CoalescingBookServiceTest {
+
+    private static final int CALLERS = 16;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @Mock
+    private BookIsbnFilter bookIsbnFilter;
+
+    @Mock
+    private BookSuggestionIndex bookSuggestionIndex;
+
+    @Mock
+    private BookHistoryService bookHistoryService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ReplicationRoutingDataSource replicationRoutingDataSource;
+
+    private BookService bookService;
+
+    private Book book;
+
+    @BeforeEach
+    private void prepareData() {
+        bookService = new CoalescingBookService(
+                new BookServiceImpl(bookRepository, objectMapper, bookIsbnFilter, new SingleShardRouter(),
+                        bookSuggestionIndex, bookHistoryService, new TransactionTemplate(transactionManager)),
+                Optional.of(replicationRoutingDataSource));
+
+        book = Book.builder()
+                .isbn("9780340960196")
+                .title("Dune")
+                .genreName("Science Fiction")
+                .pages(412)
+                .basePrice(BigDecimal.valueOf(23.25))
+                .quantity(12)
+                .publishDate(LocalDate.of(2015, 7, 16))
+                .authorName("Frank Herbert").build();
+    }
+
+    @Test
+    public void ConcurrentGetBookForSameIsbn_CausesSingleQuery() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findById(book.getIsbn())).thenAnswer(invocationOnMock -> {
+            release.await();
+            return Optional.of(book);
+        });
+
+        List<BookDTO> results = callConcurrently(() -> bookService.getBook(book.getIsbn()), release);
+
+        verify(bookRepository, times(1)).findById(book.getIsbn());
+        assertThat(results, allOf(
+                iterableWithSize(CALLERS),
+                everyItem(hasProperty("isbn", equalTo(book.getIsbn())))
+        ));
+    }
+
+    @Test
+    public void ConcurrentGetAllBooks_CausesSingleQuery() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findAll(ArgumentMatchers.any(Sort.class))).thenAnswer(invocationOnMock -> {
+            release.await();
+            return Collections.singletonList(book);
+        });
+
+        List<List<BookDTO>> results = callConcurrently(bookService::getAllBooks, release);
+
+        verify(bookRepository, times(1)).findAll(ArgumentMatchers.any(Sort.class));
+        assertThat(results, everyItem(contains(hasProperty("isbn", equalTo(book.getIsbn())))));
+    }
+
+    @Test
+    public void ConcurrentGetBookForSameIsbn_QueriesPerCaller_When_CallersReadFromPrimary()
+            throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(replicationRoutingDataSource.readsFromPrimary()).thenReturn(true);
+        when(bookRepository.findById(book.getIsbn())).thenAnswer(invocationOnMock -> {
+            release.await();
+            return Optional.of(book);
+        });
+
+        List<BookDTO> results = callConcurrently(() -> bookService.getBook(book.getIsbn()), release);
+
+        verify(bookRepository, times(CALLERS)).findById(book.getIsbn());
+        assertThat(results, iterableWithSize(CALLERS));
+    }
+
+    @Test
+    public void SequentialGetBook_QueriesEachTime() {
+        when(bookRepository.findById(book.getIsbn())).thenReturn(Optional.of(book));
+
+        bookService.getBook(book.getIsbn());
+        bookService.getBook(book.getIsbn());
+
+        verify(bookRepository, times(2)).findById(book.getIsbn());
+    }
+
+    @Test
+    public void GetBookAfterWrite_StartsNewQuery_InsteadOfJoiningLoadStartedBeforeWrite() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findById(book.getIsbn()))
+                .thenAnswer(invocationOnMock -> {
+                    release.await();
+                    return Optional.of(book);
+                })
+                .thenReturn(Optional.empty());
+        when(bookRepository.deleteByIsbn(book.getIsbn())).thenReturn(1);
+
+        Thread staleReader = new Thread(() -> bookService.getBook(book.getIsbn()));
+        staleReader.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (staleReader.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        bookService.deleteBook(book.getIsbn());
+
+        try {
+            // joining the stale load would block until release
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> Assertions.assertThrows(
+                    BookNotFoundException.class, () -> bookService.getBook(book.getIsbn())));
+        } finally {
+            release.countDown();
+            staleReader.join();
+        }
+        verify(bookRepository, times(2)).findById(book.getIsbn());
+    }
+
+    // Starts every caller, waits until all of them are parked behind the one loading, then lets the load finish
+    private static <T> List<T> callConcurrently(Supplier<T> call, CountDownLatch release) throws InterruptedException {
+        List<T> results = new CopyOnWriteArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+
+        for (int i = 0; i < CALLERS; i++) {
+            Thread caller = new Thread(() -> results.add(call.get()));
+            callers.add(caller);
+            caller.start();
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!callers.stream().allMatch(v -> v.getState() == Thread.State.WAITING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        return results;
+    }
+}
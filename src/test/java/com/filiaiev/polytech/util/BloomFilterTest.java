@@ -0,0 +1,68 @@
+package com.filiaiev.polytech.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BloomFilterTest {
+
+    private static final int INSERTIONS = 10_000;
+
+    @Test
+    public void NeverReportAddedValueAsAbsent() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+
+        IntStream.range(0, INSERTIONS).forEach(i -> filter.add(isbn(i)));
+
+        assertThat(IntStream.range(0, INSERTIONS).allMatch(i -> filter.mightContain(isbn(i))), is(true));
+    }
+
+    @Test
+    public void KeepFalsePositiveRateNearConfiguredRate() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        IntStream.range(0, INSERTIONS).forEach(i -> filter.add(isbn(i)));
+
+        int probes = 100_000;
+        long falsePositives = IntStream.range(INSERTIONS, INSERTIONS + probes)
+                .filter(i -> filter.mightContain(isbn(i)))
+                .count();
+
+        assertThat((double) falsePositives / probes, closeTo(0.01, 0.005));
+    }
+
+    @Test
+    public void KeepEveryValueAddedConcurrently() throws InterruptedException {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        int threads = 8;
+        List<Thread> writers = new ArrayList<>();
+
+        // a tiny filter makes writers collide on the same words
+        BloomFilter crowded = new BloomFilter(64, 0.5);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread writer = new Thread(() -> {
+                for (int i = offset; i < INSERTIONS; i += threads) {
+                    filter.add(isbn(i));
+                    crowded.add(isbn(i));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertThat(IntStream.range(0, INSERTIONS).allMatch(i -> filter.mightContain(isbn(i))), is(true));
+        assertThat(IntStream.range(0, INSERTIONS).allMatch(i -> crowded.mightContain(isbn(i))), is(true));
+    }
+
+    private static String isbn(int i) {
+        return String.format("978%010d", i);
+    }
+}
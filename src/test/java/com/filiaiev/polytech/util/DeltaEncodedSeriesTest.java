@@ -0,0 +1,100 @@
+package com.filiaiev.polytech.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class DeltaEncodedSeriesTest {
+
+    @Test
+    public void ReadBackPointsAcrossChunks() {
+        DeltaEncodedSeries series = new DeltaEncodedSeries(2, 16);
+        Random random = new Random(42);
+        List<long[]> expected = new ArrayList<>();
+        long timestamp = 1_600_000_000_000L;
+
+        for (int i = 0; i < 1000; i++) {
+            // out of order timestamps and large jumps produce negative and wide deltas
+            timestamp += random.nextInt(2000) - 500;
+            long[] point = {timestamp, random.nextInt(100_000) - 50_000, i % 7 == 0 ? Long.MAX_VALUE : i};
+            if (series.appendIfChanged(point[0], point[1], point[2])) {
+                expected.add(point);
+            }
+        }
+
+        List<long[]> actual = new ArrayList<>();
+        series.forEachBetween(Long.MIN_VALUE, Long.MAX_VALUE,
+                (t, values) -> actual.add(new long[]{t, values[0], values[1]}));
+
+        assertThat(actual.size(), equalTo(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i), equalTo(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void SkipUnchangedValuesAndFilterByRange() {
+        DeltaEncodedSeries series = new DeltaEncodedSeries(2, 4);
+
+        assertThat(series.appendIfChanged(100, 2325, 12), is(true));
+        assertThat(series.appendIfChanged(200, 2325, 12), is(false));
+        assertThat(series.appendIfChanged(300, 1999, 12), is(true));
+        assertThat(series.appendIfChanged(400, 1999, 11), is(true));
+
+        List<Long> timestamps = new ArrayList<>();
+        series.forEachBetween(150, 400, (t, values) -> timestamps.add(t));
+
+        assertThat(timestamps, contains(300L));
+    }
+
+    @Test
+    public void SealFullChunksIntoPayloadsThatDecodeBack() {
+        DeltaEncodedSeries series = new DeltaEncodedSeries(2, 2);
+        for (int i = 0; i < 5; i++) {
+            series.appendIfChanged(100 + i, 1999 - i, i);
+        }
+
+        assertThat(series.sealedChunks(), hasSize(2));
+        assertThat(series.sealedChunks().get(1).getMinTimestamp(), equalTo(102L));
+        assertThat(series.sealedChunks().get(1).getMaxTimestamp(), equalTo(103L));
+
+        List<Long> timestamps = new ArrayList<>();
+        DeltaEncodedSeries.decode(series.sealedChunks().get(1).getPayload(), (t, values) -> {
+            assertThat(values, equalTo(new long[]{1999 - (t - 100), t - 100}));
+            timestamps.add(t);
+        });
+        assertThat(timestamps, contains(102L, 103L));
+
+        series.dropSealed(2);
+        timestamps.clear();
+        series.forEachBetween(Long.MIN_VALUE, Long.MAX_VALUE, (t, values) -> timestamps.add(t));
+
+        assertThat(series.sealedChunks(), empty());
+        assertThat(series.encodeOpen().getPointCount(), equalTo(1));
+        assertThat(timestamps, contains(104L));
+        assertThat(series.lastValues(), equalTo(new long[]{1995, 4}));
+    }
+
+    @Test
+    public void EncodeSlowlyChangingValuesCompactly() {
+        DeltaEncodedSeries series = new DeltaEncodedSeries(2, 128);
+        long timestamp = 1_600_000_000_000L;
+
+        for (int i = 0; i < 1280; i++) {
+            series.appendIfChanged(timestamp + i * 60_000L, 1999 + i % 3, 500 - i % 5);
+        }
+
+        long encodedBytes = series.encodeOpen().getPayload().length;
+        for (DeltaEncodedSeries.EncodedChunk chunk : series.sealedChunks()) {
+            encodedBytes += chunk.getPayload().length;
+        }
+
+        // a point takes 3 bytes for the minute step plus a byte per value
+        assertThat(encodedBytes, lessThan(1280L * 6));
+    }
+}
@@ -0,0 +1,90 @@
+package com.filiaiev.polytech.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SuggestionTrieTest {
+
+    private SuggestionTrie trie;
+
+    @BeforeEach
+    private void prepareData() {
+        trie = new SuggestionTrie(3);
+        trie.add("harry potter and the order of the phoenix", "Harry Potter and the Order of the Phoenix", 18);
+        trie.add("harry potter and the order of the phoenix", "Harry Potter and the Order of the Phoenix", 30);
+        trie.add("harry harrison", "Harry Harrison", 5);
+        trie.add("frank herbert", "Frank Herbert", 12);
+        trie.add("dune", "Dune", 12);
+    }
+
+    @Test
+    public void SuggestRanksByScoreAcrossSplitEdges() {
+        assertThat(trie.suggest("harry", 10), contains(
+                "Harry Potter and the Order of the Phoenix", "Harry Harrison"));
+        assertThat(trie.suggest("harry h", 10), contains("Harry Harrison"));
+        assertThat(trie.suggest("h", 1), contains("Harry Potter and the Order of the Phoenix"));
+        assertThat(trie.suggest("harx", 10), empty());
+        assertThat(trie.suggest("dunes", 10), empty());
+        assertThat(trie.suggest("harry", 0), empty());
+        assertThat(trie.suggest("harry", -1), empty());
+    }
+
+    @Test
+    public void RemoveDropsTermOnlyAfterLastContribution() {
+        trie.remove("harry potter and the order of the phoenix", 30);
+        assertThat(trie.suggest("harry", 10), contains(
+                "Harry Potter and the Order of the Phoenix", "Harry Harrison"));
+
+        trie.remove("harry potter and the order of the phoenix", 18);
+        assertThat(trie.suggest("harry", 10), contains("Harry Harrison"));
+        assertThat(trie.suggest("harry p", 10), empty());
+    }
+
+    @Test
+    public void TopKStaysExactUnderRandomUpdates() {
+        Random random = new Random(42);
+        Map<String, Long> scores = new HashMap<>();
+        SuggestionTrie randomTrie = new SuggestionTrie(5);
+
+        for (int i = 0; i < 5000; i++) {
+            String key = randomKey(random);
+            Long score = scores.get(key);
+            if (score != null && random.nextBoolean()) {
+                randomTrie.remove(key, score);
+                scores.remove(key);
+            } else if (score == null) {
+                long newScore = random.nextInt(100);
+                randomTrie.add(key, key, newScore);
+                scores.put(key, newScore);
+            }
+        }
+
+        for (String prefix : new String[]{"", "a", "ab", "ba", "cab", "abc"}) {
+            List<String> expected = scores.entrySet().stream()
+                    .filter(v -> v.getKey().startsWith(prefix))
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            assertThat(prefix, randomTrie.suggest(prefix, 5), equalTo(expected));
+        }
+    }
+
+    private static String randomKey(Random random) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0, length = 1 + random.nextInt(5); i < length; i++) {
+            key.append((char) ('a' + random.nextInt(3)));
+        }
+        return key.toString();
+    }
+}